@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encodes an image as a sequence of horizontal bands of rows, so that the whole image never has to be held in memory.
+ *
+ * @see JpegBandEncoder
+ * @see PngBandEncoder
+ */
+interface BandEncoder {
+
+    /**
+     * Writes the image header, must be called once before any band.
+     */
+    void begin(OutputStream outputStream, int width, int height) throws IOException;
+
+    /**
+     * Encodes the next rows of the image.
+     *
+     * @param argb Non premultiplied colors as returned by {@link android.graphics.Bitmap#getPixels}, with a stride equal
+     * to the image width
+     * @param rowCount Number of rows held by <code>argb</code>
+     */
+    void encode(int[] argb, int rowCount) throws IOException;
+
+    /**
+     * Writes any buffered rows and the image trailer, does not close the stream.
+     */
+    void end() throws IOException;
+
+    /**
+     * Releases what the encoder holds when {@link #end()} won't be called, e.g. after a failure, leaving the image
+     * incomplete. Does nothing if the encoder wasn't begun or already ended.
+     */
+    void abort();
+}
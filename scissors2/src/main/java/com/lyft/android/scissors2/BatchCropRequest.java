@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Crops several regions of one image into as many outputs, no {@link CropView} involved. The image is decoded once or
+ * region by region, whichever reads fewer pixels, then crops are rendered and encoded in parallel:
+ * <pre>
+ * BatchCropRequest.from(context, uri)
+ *     .crop(Arrays.asList(
+ *         new CropSpec(new Rect(0, 0, 1200, 1200), avatarFile).outputSize(512, 512),
+ *         new CropSpec(new Rect(0, 300, 1600, 1200), bannerFile).maxOutputSize(1280, 720)));
+ * </pre>
+ */
+public class BatchCropRequest {
+
+    private final Context context;
+    private final Object model;
+    private Executor executor;
+    private int priority;
+
+    private BatchCropRequest(Context context, Object model) {
+        this.context = context.getApplicationContext();
+        this.model = model;
+    }
+
+    /**
+     * @param model Image to crop, either a {@link android.net.Uri}, a {@link java.io.File}, a {@link String} path or
+     * uri or an {@link Integer} resource id.
+     */
+    public static BatchCropRequest from(@NonNull Context context, @NonNull Object model) {
+        Utils.checkNotNull(context, "context == null");
+        Utils.checkNotNull(model, "model == null");
+        return new BatchCropRequest(context, model);
+    }
+
+    /**
+     * Executor to decode, render and compress on, defaults to the shared pool of {@link CropRequest}. Crops run on as
+     * many of its threads as there are CPUs at most.
+     *
+     * @return current request for chaining.
+     */
+    public BatchCropRequest executor(@NonNull Executor executor) {
+        Utils.checkNotNull(executor, "executor == null");
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Priority of this batch on the default executor, see {@link CropRequest#priority(int)}.
+     *
+     * @return current request for chaining.
+     */
+    public BatchCropRequest priority(int priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * Asynchronously crops the image into the output of each spec. The batch fails as soon as one crop fails, outputs
+     * already written are left in place.
+     *
+     * @return {@link Future} of the results in the order of <code>specs</code>, cancelling it cancels every pending
+     * crop. Failures are reported as an {@link ExecutionException}, so is the rejection of the whole batch by a full
+     * executor.
+     */
+    public Future<List<CropResult>> crop(@NonNull List<CropSpec> specs) {
+        Utils.checkNotNull(specs, "specs == null");
+        Utils.checkArg(!specs.isEmpty(), "specs must not be empty");
+        final List<CropSpec> batchSpecs = new ArrayList<>(specs);
+        final Executor executor = this.executor != null ? this.executor : CropExecutor.getDefault();
+        // A task per crop would overflow the queue of the default executor, workers take crops in turn instead
+        final int workerCount = Math.min(batchSpecs.size(), getParallelism(executor));
+        final BatchSource source = new BatchSource(context, model, batchSpecs);
+        final BatchFuture batch = new BatchFuture(batchSpecs.size()) {
+            @Override
+            CropResult crop(int index) throws Exception {
+                return flush(source, batchSpecs.get(index), index).call();
+            }
+
+            @Override
+            void release() {
+                source.release();
+            }
+        };
+        batch.start(executor, workerCount, priority);
+        return batch;
+    }
+
+    private static int getParallelism(Executor executor) {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        if (executor instanceof ThreadPoolExecutor) {
+            return Math.max(1, Math.min(processors, ((ThreadPoolExecutor) executor).getMaximumPoolSize()));
+        }
+        return Math.max(1, processors);
+    }
+
+    private static Callable<CropResult> flush(final BatchSource source, final CropSpec spec, final int index) {
+        final CropWriter writer = new CropWriter() {
+            @Override
+            public CropResult writeTo(OutputStream outputStream) throws Exception {
+                final Bitmap cropped = source.render(index);
+                try {
+                    Utils.checkInterrupted();
+                    final boolean compressed = cropped.compress(spec.format, spec.quality, outputStream);
+                    Utils.checkInterrupted();
+                    if (!compressed) {
+                        throw new IOException("Unable to compress " + spec);
+                    }
+                    return new CropResult(cropped.getWidth(), cropped.getHeight())
+                            .withEncoding(spec.format, spec.quality);
+                } finally {
+                    BitmapReusePool.get().put(cropped);
+                }
+            }
+        };
+        return spec.file != null
+                ? Utils.flushToFile(writer, spec.file)
+                : Utils.flushToStream(writer, spec.outputStream, spec.closeWhenDone);
+    }
+}
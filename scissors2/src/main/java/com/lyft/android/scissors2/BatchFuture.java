@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Future of a {@link BatchCropRequest}. A few workers take the crops in turn, the batch completes once every crop is
+ * written, one of them failed or it was cancelled. Workers that never run, cancelled or rejected by a full executor,
+ * leave their crops to the others.
+ * <p>
+ * {@link #release()} is called once no worker runs anymore, whatever the outcome.
+ */
+abstract class BatchFuture implements Future<List<CropResult>> {
+
+    private final CropResult[] results;
+    private final List<Worker> workers = new ArrayList<>();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final AtomicInteger remainingWorkers = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final CountDownLatch completion = new CountDownLatch(1);
+    private volatile RejectedExecutionException rejection;
+    private volatile boolean cancelled;
+
+    BatchFuture(int count) {
+        this.results = new CropResult[count];
+    }
+
+    /**
+     * Crops the spec at <code>index</code>, called from the workers.
+     */
+    abstract CropResult crop(int index) throws Exception;
+
+    /**
+     * Releases what the crops share, called once from the last worker to stop.
+     */
+    abstract void release();
+
+    void start(Executor executor, int workerCount, int priority) {
+        remainingWorkers.set(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(new Worker());
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.future = CropExecutor.submit(executor, worker, priority);
+            } catch (RejectedExecutionException e) {
+                worker.onRejected(e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+        if (isDone()) {
+            return false;
+        }
+        cancelled = true;
+        completion.countDown();
+        for (Worker worker : workers) {
+            if (worker.future != null) {
+                worker.future.cancel(mayInterruptIfRunning);
+            }
+            // A cancelled worker that never started won't stop by itself
+            worker.abandon();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return completion.getCount() == 0;
+    }
+
+    @Override
+    public List<CropResult> get() throws InterruptedException, ExecutionException {
+        completion.await();
+        return getResults();
+    }
+
+    @Override
+    public List<CropResult> get(long timeout, @NonNull TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!completion.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return getResults();
+    }
+
+    private List<CropResult> getResults() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (failure.get() != null) {
+            throw new ExecutionException(failure.get());
+        }
+        for (CropResult result : results) {
+            if (result == null) {
+                // Every worker was rejected
+                throw new ExecutionException(rejection);
+            }
+        }
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    private void finish() {
+        if (remainingWorkers.decrementAndGet() == 0) {
+            release();
+            completion.countDown();
+        }
+    }
+
+    private class Worker implements Callable<Void>, CropExecutor.Rejectable {
+
+        /**
+         * Set by the first of running and abandoning, so that each worker finishes exactly once.
+         */
+        final AtomicBoolean claimed = new AtomicBoolean();
+        volatile Future<Void> future;
+
+        @Override
+        public Void call() {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                int index;
+                while (!isDone() && (index = nextIndex.getAndIncrement()) < results.length) {
+                    Utils.checkInterrupted();
+                    results[index] = crop(index);
+                }
+            } catch (Throwable throwable) {
+                // Fail fast, outputs already written are left in place
+                failure.compareAndSet(null, throwable);
+                completion.countDown();
+            } finally {
+                finish();
+            }
+            return null;
+        }
+
+        @Override
+        public void onRejected(RejectedExecutionException e) {
+            rejection = e;
+            abandon();
+        }
+
+        void abandon() {
+            if (claimed.compareAndSet(false, true)) {
+                finish();
+            }
+        }
+    }
+}
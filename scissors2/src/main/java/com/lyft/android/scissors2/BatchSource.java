@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+
+/**
+ * Decodes the source image of a {@link BatchCropRequest} for all of its {@link CropSpec}s. The union of the regions
+ * is decoded once when that reads fewer pixels than decoding each region on its own, which happens when regions
+ * overlap. Images the {@link BitmapRegionDecoder} does not support are decoded once as a whole when that fits the
+ * memory budget, or as a whole for each crop at its own, coarser when needed, sample size otherwise.
+ * <p>
+ * Crops can be rendered from several threads at once, the shared decode happens on the first of them.
+ */
+class BatchSource {
+
+    private static final String TAG = "scissors.BatchSource";
+
+    private final Context context;
+    private final Object model;
+    private final List<CropSpec> specs;
+
+    // Planned once, guarded by this
+    private boolean prepared;
+    private IOException failure;
+    private int orientation;
+    private int sourceWidth;
+    private int sourceHeight;
+    private RectF[] storedRects;
+    private Rect[] outputSizes;
+    private int[] samples;
+    private boolean regionDecodable;
+    private long maxBytes;
+    private Bitmap shared;
+    private Rect sharedRegion;
+
+    BatchSource(Context context, Object model, List<CropSpec> specs) {
+        this.context = context.getApplicationContext();
+        this.model = model;
+        this.specs = specs;
+    }
+
+    /**
+     * Renders the crop of the spec at <code>index</code> oriented and scaled to its output size.
+     *
+     * @return A {@link Bitmap} the caller owns.
+     */
+    Bitmap render(int index) throws IOException {
+        prepare();
+        if (shared != null) {
+            return cropFrom(shared, sharedRegion, index);
+        }
+        if (regionDecodable) {
+            final Rect size = outputSizes[index];
+            return RegionCropper.decodeRegion(context, model, storedRects[index], orientation,
+                    Bitmap.Config.ARGB_8888, size.width(), size.height());
+        }
+        final Bitmap whole = decodeWhole(budgetSample(sourceWidth, sourceHeight, samples[index], maxBytes));
+        try {
+            return cropFrom(whole, new Rect(0, 0, sourceWidth, sourceHeight), index);
+        } finally {
+            BitmapReusePool.get().put(whole);
+        }
+    }
+
+    /**
+     * @param decoded Decode of the <code>decodedRegion</code> of the image, in stored pixels
+     */
+    private Bitmap cropFrom(Bitmap decoded, Rect decodedRegion, int index) {
+        // Pixels of the decoded bitmap the region covers, its sample size may have been rounded by the decoder
+        final Rect size = outputSizes[index];
+        final Rect region = RegionCropper.toSourceRect(storedRects[index], sourceWidth, sourceHeight);
+        final float scaleX = (float) decoded.getWidth() / decodedRegion.width();
+        final float scaleY = (float) decoded.getHeight() / decodedRegion.height();
+        final Rect src = new Rect(
+                (int) ((region.left - decodedRegion.left) * scaleX),
+                (int) ((region.top - decodedRegion.top) * scaleY),
+                (int) Math.ceil((region.right - decodedRegion.left) * scaleX),
+                (int) Math.ceil((region.bottom - decodedRegion.top) * scaleY));
+        src.right = Math.min(Math.max(src.right, src.left + 1), decoded.getWidth());
+        src.bottom = Math.min(Math.max(src.bottom, src.top + 1), decoded.getHeight());
+
+        final BitmapReusePool pool = BitmapReusePool.get();
+        final Bitmap cropped = pool.obtain(src.width(), src.height(), Bitmap.Config.ARGB_8888);
+        new Canvas(cropped).drawBitmap(decoded, src, new Rect(0, 0, src.width(), src.height()), null);
+        final int croppedWidth = ExifOrientation.getOrientedWidth(orientation, src.width(), src.height());
+        final int croppedHeight = ExifOrientation.getOrientedHeight(orientation, src.width(), src.height());
+        final float scale = Math.min((float) size.width() / croppedWidth, (float) size.height() / croppedHeight);
+        final Bitmap reduced = pool.downsample(cropped, TileRenderer.computeSampleSize(scale));
+        if (reduced != cropped) {
+            pool.put(cropped);
+        }
+        return RegionCropper.orient(reduced, orientation, size.width(), size.height());
+    }
+
+    /**
+     * Gives the shared decode back, only once every crop is rendered.
+     */
+    synchronized void release() {
+        if (shared != null) {
+            BitmapReusePool.get().put(shared);
+            shared = null;
+        }
+    }
+
+    /**
+     * @param regions Regions to crop, in stored pixels of the image
+     * @param samples Sample size each region would be decoded at on its own
+     * @param maxBytes Largest shared decode allowed
+     * @return Whether decoding the union of <code>regions</code> once, at the finest sample size, reads fewer pixels
+     * than decoding each of them at its own sample size.
+     */
+    static boolean shouldDecodeOnce(Rect[] regions, int[] samples, long maxBytes) {
+        if (regions.length < 2) {
+            return false;
+        }
+        final Rect union = new Rect(regions[0]);
+        int finestSample = samples[0];
+        long separatePixels = 0;
+        for (int i = 0; i < regions.length; i++) {
+            union.union(regions[i]);
+            finestSample = Math.min(finestSample, samples[i]);
+            separatePixels += (long) regions[i].width() * regions[i].height() / ((long) samples[i] * samples[i]);
+        }
+        final long sharedPixels = (long) union.width() * union.height() / ((long) finestSample * finestSample);
+        return sharedPixels <= separatePixels && sharedPixels * 4 <= maxBytes;
+    }
+
+    /**
+     * @return <code>sample</code>, doubled as many times as needed for an ARGB_8888 decode of a
+     * <code>width</code>x<code>height</code> image to fit <code>maxBytes</code>.
+     */
+    static int budgetSample(int width, int height, int sample, long maxBytes) {
+        while ((long) (width / sample) * (height / sample) * 4 > maxBytes && (width > sample || height > sample)) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    private synchronized void prepare() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (prepared) {
+            return;
+        }
+        try {
+            plan();
+            prepared = true;
+        } catch (IOException e) {
+            if (!(e instanceof InterruptedIOException)) {
+                failure = e;
+            }
+            throw e;
+        }
+    }
+
+    private void plan() throws IOException {
+        BitmapRegionDecoder decoder = null;
+        try {
+            decoder = RegionCropper.newDecoder(context, model);
+            sourceWidth = decoder.getWidth();
+            sourceHeight = decoder.getHeight();
+        } catch (IOException e) {
+            // Not a format the region decoder supports, decode it as a whole below
+            if (BuildConfig.DEBUG) {
+                Log.w(TAG, "Unable to region decode " + model, e);
+            }
+            final BitmapFactory.Options bounds = BuiltInBitmapLoader.decodeBounds(context, model);
+            sourceWidth = bounds.outWidth;
+            sourceHeight = bounds.outHeight;
+        }
+        try {
+            orientation = ExifOrientation.read(context, model);
+            final int orientedWidth = ExifOrientation.getOrientedWidth(orientation, sourceWidth, sourceHeight);
+            final int orientedHeight = ExifOrientation.getOrientedHeight(orientation, sourceWidth, sourceHeight);
+
+            final int count = specs.size();
+            storedRects = new RectF[count];
+            outputSizes = new Rect[count];
+            final Rect[] regions = new Rect[count];
+            samples = new int[count];
+            for (int i = 0; i < count; i++) {
+                final Rect region = specs.get(i).region;
+                final RectF normalized = new RectF(
+                        clamp((float) region.left / orientedWidth), clamp((float) region.top / orientedHeight),
+                        clamp((float) region.right / orientedWidth), clamp((float) region.bottom / orientedHeight));
+                storedRects[i] = new RectF();
+                ExifOrientation.toStored(orientation, normalized, storedRects[i]);
+
+                regions[i] = RegionCropper.toSourceRect(storedRects[i], sourceWidth, sourceHeight);
+                final int width = ExifOrientation.getOrientedWidth(orientation, regions[i].width(),
+                        regions[i].height());
+                final int height = ExifOrientation.getOrientedHeight(orientation, regions[i].width(),
+                        regions[i].height());
+                outputSizes[i] = specs.get(i).outputSize.resolve(width, height);
+                samples[i] = CropViewExtensions.computeSampleSize(width, height, outputSizes[i].width(),
+                        outputSizes[i].height());
+            }
+
+            maxBytes = Runtime.getRuntime().maxMemory() / 8;
+            regionDecodable = decoder != null;
+            if (!regionDecodable) {
+                final int sample = finestSample(samples);
+                if (budgetSample(sourceWidth, sourceHeight, sample, maxBytes) == sample) {
+                    shared = decodeWhole(sample);
+                    sharedRegion = new Rect(0, 0, sourceWidth, sourceHeight);
+                }
+            } else if (shouldDecodeOnce(regions, samples, maxBytes)) {
+                decodeUnion(decoder, regions, samples);
+            }
+        } finally {
+            if (decoder != null) {
+                decoder.recycle();
+            }
+        }
+    }
+
+    private void decodeUnion(BitmapRegionDecoder decoder, Rect[] regions, int[] samples) throws IOException {
+        final Rect union = new Rect(regions[0]);
+        for (Rect region : regions) {
+            union.union(region);
+        }
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = finestSample(samples);
+        Utils.checkInterrupted();
+        shared = decoder.decodeRegion(union, options);
+        if (shared == null) {
+            throw new IOException("Unable to decode " + union + " of " + model);
+        }
+        sharedRegion = union;
+    }
+
+    private Bitmap decodeWhole(int sample) throws IOException {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sample;
+        Utils.checkInterrupted();
+        final Bitmap decoded = BuiltInBitmapLoader.decodeStream(context, model, options);
+        if (decoded == null) {
+            throw new IOException("Unable to decode " + model);
+        }
+        return decoded;
+    }
+
+    private static int finestSample(int[] samples) {
+        int finest = samples[0];
+        for (int sample : samples) {
+            finest = Math.min(finest, sample);
+        }
+        return finest;
+    }
+
+    private static float clamp(float value) {
+        return Math.max(0f, Math.min(value, 1f));
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Build;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mutable bitmaps handed back once their content is no longer needed, shared by loads, tiles and crops so that they
+ * don't keep allocating large bitmaps. Bitmaps of the exact size and config requested are reused on every API level,
+ * since KitKat any large enough bitmap is reconfigured.
+ * <p>
+ * Bounded to {@value #HEAP_FRACTION_DENOMINATOR}th of the heap, least recently returned bitmaps are recycled first.
+ * Thread safe.
+ */
+class BitmapReusePool {
+
+    private static final int HEAP_FRACTION_DENOMINATOR = 8;
+
+    private static BitmapReusePool instance;
+
+    private final long maxBytes;
+    // Least recently returned first
+    private final List<Bitmap> bitmaps = new ArrayList<>();
+    private long bytes;
+
+    BitmapReusePool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    static synchronized BitmapReusePool get() {
+        if (instance == null) {
+            instance = new BitmapReusePool(Runtime.getRuntime().maxMemory() / HEAP_FRACTION_DENOMINATOR);
+        }
+        return instance;
+    }
+
+    /**
+     * @return A transparent mutable bitmap, reused if possible.
+     */
+    Bitmap obtain(int width, int height, Bitmap.Config config) {
+        final Bitmap reused = take(width, height, config);
+        if (reused == null) {
+            return Bitmap.createBitmap(width, height, config);
+        }
+        reused.eraseColor(Color.TRANSPARENT);
+        return reused;
+    }
+
+    /**
+     * Draws <code>source</code> filtered into a pooled bitmap of the given size, like
+     * {@link Bitmap#createScaledBitmap} it returns <code>source</code> itself when it already has that size.
+     */
+    Bitmap scale(Bitmap source, int width, int height) {
+        if (source.getWidth() == width && source.getHeight() == height) {
+            return source;
+        }
+        final Bitmap.Config config = source.getConfig() != null ? source.getConfig() : Bitmap.Config.ARGB_8888;
+        final Bitmap scaled = obtain(width, height, config);
+        new Canvas(scaled).drawBitmap(source, null, new Rect(0, 0, width, height),
+                new Paint(Paint.FILTER_BITMAP_FLAG));
+        return scaled;
+    }
+
+    /**
+     * Reduces <code>source</code> by <code>sampleSize</code>, a power of 2, halving it one step at a time. Each step
+     * averages 2x2 pixels, whereas a single filtered draw past 2:1 only samples some of them and aliases.
+     *
+     * @return <code>source</code> itself when <code>sampleSize</code> is 1, a pooled bitmap otherwise. Intermediate
+     * steps are put back.
+     */
+    Bitmap downsample(Bitmap source, int sampleSize) {
+        Bitmap reduced = source;
+        for (int step = sampleSize; step > 1; step /= 2) {
+            final Bitmap half = scale(reduced, Math.max(1, reduced.getWidth() / 2),
+                    Math.max(1, reduced.getHeight() / 2));
+            if (reduced != source && half != reduced) {
+                put(reduced);
+            }
+            reduced = half;
+        }
+        return reduced;
+    }
+
+    /**
+     * Lets <code>options</code> decode into a pooled bitmap, {@link BitmapFactory.Options#outWidth} and
+     * {@link BitmapFactory.Options#outHeight} must hold the bounds of the image. Decoders rejecting the bitmap throw an
+     * {@link IllegalArgumentException}, callers should then {@link #put} it back and decode without it.
+     */
+    void prepareForDecode(BitmapFactory.Options options) {
+        final int sampleSize = Math.max(1, options.inSampleSize);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT && sampleSize != 1) {
+            // Only unsampled decodes into bitmaps of the same size were supported
+            return;
+        }
+        final Bitmap.Config config = options.inPreferredConfig != null
+                ? options.inPreferredConfig : Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+        options.inBitmap = take(ceilDiv(options.outWidth, sampleSize), ceilDiv(options.outHeight, sampleSize), config);
+    }
+
+    /**
+     * Returns a bitmap that won't be drawn nor read anymore, or recycles it if it can't be reused.
+     */
+    void put(@Nullable Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        final long size = getAllocationByteCount(bitmap);
+        if (!bitmap.isMutable() || size > maxBytes / 2) {
+            bitmap.recycle();
+            return;
+        }
+        synchronized (this) {
+            if (bitmaps.contains(bitmap)) {
+                return;
+            }
+            bitmaps.add(bitmap);
+            bytes += size;
+            while (bytes > maxBytes) {
+                final Bitmap evicted = bitmaps.remove(0);
+                bytes -= getAllocationByteCount(evicted);
+                evicted.recycle();
+            }
+        }
+    }
+
+    /**
+     * Recycles every pooled bitmap.
+     */
+    synchronized void clear() {
+        for (Bitmap bitmap : bitmaps) {
+            bitmap.recycle();
+        }
+        bitmaps.clear();
+        bytes = 0;
+    }
+
+    synchronized long getByteCount() {
+        return bytes;
+    }
+
+    @Nullable
+    private synchronized Bitmap take(int width, int height, Bitmap.Config config) {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        // Most recently returned first, exact matches win over reconfiguring a larger bitmap
+        int candidate = -1;
+        final long needed = (long) width * height * bytesPerPixel(config);
+        for (int i = bitmaps.size() - 1; i >= 0; i--) {
+            final Bitmap bitmap = bitmaps.get(i);
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+                candidate = i;
+                break;
+            }
+            if (candidate == -1 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                    && getAllocationByteCount(bitmap) >= needed) {
+                candidate = i;
+            }
+        }
+        if (candidate == -1) {
+            return null;
+        }
+        final Bitmap bitmap = bitmaps.remove(candidate);
+        bytes -= getAllocationByteCount(bitmap);
+        if (bitmap.getWidth() != width || bitmap.getHeight() != height || bitmap.getConfig() != config) {
+            reconfigure(bitmap, width, height, config);
+        }
+        return bitmap;
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static void reconfigure(Bitmap bitmap, int width, int height, Bitmap.Config config) {
+        bitmap.reconfigure(width, height, config);
+    }
+
+    private static long getAllocationByteCount(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        if (config == Bitmap.Config.RGB_565) {
+            return 2;
+        }
+        return 4;
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.widget.ImageView;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link BitmapLoader} relying on {@link BitmapFactory} only, no image library required. Images are read twice, once
+ * for their bounds and once to decode them subsampled close to the viewport size, always off the main thread.
+ * <p>
+ * The EXIF orientation is read from the header and handed to {@link CropView#setImageBitmap(Bitmap, int)}, pixels are
+ * never rotated.
+ * <p>
+ * Supports {@link android.net.Uri}, {@link java.io.File}, {@link String} paths or uris and {@link Integer} resource ids.
+ *
+ * @see BuiltInBitmapLoader#createUsing(CropView)
+ */
+public class BuiltInBitmapLoader implements BitmapLoader {
+
+    private static final String TAG = "scissors.BuiltInLoader";
+    /**
+     * Loads are visible to the user, start them before pending crops.
+     */
+    static final int LOAD_PRIORITY = 1;
+
+    /**
+     * Latest load of each view, only accessed from the main thread.
+     */
+    private static final Map<ImageView, LoadTask> PENDING_LOADS = new WeakHashMap<>();
+
+    private final int viewportWidth;
+    private final int viewportHeight;
+    private final int displayQuality;
+
+    public BuiltInBitmapLoader(int viewportWidth, int viewportHeight) {
+        this(viewportWidth, viewportHeight, CropViewConfig.DEFAULT_DISPLAY_QUALITY);
+    }
+
+    public BuiltInBitmapLoader(int viewportWidth, int viewportHeight, @CropView.DisplayQuality int displayQuality) {
+        this.viewportWidth = viewportWidth;
+        this.viewportHeight = viewportHeight;
+        this.displayQuality = displayQuality;
+    }
+
+    @Override
+    public void load(@Nullable Object model, @NonNull ImageView imageView) {
+        final LoadTask previous = PENDING_LOADS.remove(imageView);
+        if (previous != null) {
+            previous.cancel();
+        }
+
+        if (model == null) {
+            imageView.setImageBitmap(null);
+            return;
+        }
+
+        final LoadTask task = new LoadTask(imageView, model, viewportWidth, viewportHeight, displayQuality);
+        PENDING_LOADS.put(imageView, task);
+        task.future = CropExecutor.submit(CropExecutor.getDefault(), task, LOAD_PRIORITY, false);
+    }
+
+    public static BitmapLoader createUsing(@NonNull CropView cropView) {
+        return new BuiltInBitmapLoader(cropView.getViewportWidth(), cropView.getViewportHeight(),
+                cropView.getDisplayQuality());
+    }
+
+    /**
+     * Decodes <code>model</code> subsampled and scaled to fill the viewport once oriented, or at full size if the
+     * viewport is empty.
+     *
+     * @param orientation EXIF orientation the bitmap is displayed with
+     */
+    static Bitmap decode(Context context, Object model, int orientation, int viewportWidth, int viewportHeight,
+            @CropView.DisplayQuality int displayQuality) throws IOException {
+        final BitmapFactory.Options options = decodeBounds(context, model);
+        final int sourceWidth = options.outWidth;
+        final int sourceHeight = options.outHeight;
+        final Bitmap.Config config = CropViewConfig.getDisplayConfig(displayQuality, isOpaque(options));
+        final boolean hardware = Utils.isHardware(config);
+        // Hardware bitmaps can't be scaled, only copied once done
+        options.inPreferredConfig = hardware ? Bitmap.Config.ARGB_8888 : config;
+
+        final Rect target = viewportWidth > 0 && viewportHeight > 0
+                ? CropViewExtensions.computeTargetSize(sourceWidth, sourceHeight,
+                        ExifOrientation.getOrientedWidth(orientation, viewportWidth, viewportHeight),
+                        ExifOrientation.getOrientedHeight(orientation, viewportWidth, viewportHeight))
+                : new Rect(0, 0, sourceWidth, sourceHeight);
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = CropViewExtensions.computeSampleSize(sourceWidth, sourceHeight,
+                target.width(), target.height());
+        Utils.checkInterrupted();
+        final BitmapReusePool pool = BitmapReusePool.get();
+        pool.prepareForDecode(options);
+        Bitmap sampled;
+        try {
+            sampled = decodeStream(context, model, options);
+        } catch (IllegalArgumentException e) {
+            // Not every decoder accepts a bitmap to decode into
+            pool.put(options.inBitmap);
+            options.inBitmap = null;
+            sampled = decodeStream(context, model, options);
+        }
+        if (sampled == null) {
+            pool.put(options.inBitmap);
+            throw new IOException("Unable to decode " + model);
+        }
+
+        final Bitmap scaled = pool.scale(sampled, target.width(), target.height());
+        if (scaled != sampled) {
+            pool.put(sampled);
+        }
+        if (!hardware) {
+            return scaled;
+        }
+        Utils.checkInterrupted();
+        final Bitmap uploaded = scaled.copy(config, false);
+        if (uploaded == null) {
+            return scaled;
+        }
+        pool.put(scaled);
+        return uploaded;
+    }
+
+    /**
+     * @return <code>true</code> for formats without alpha channel, <code>options</code> must hold decoded bounds.
+     */
+    static boolean isOpaque(BitmapFactory.Options options) {
+        return "image/jpeg".equals(options.outMimeType);
+    }
+
+    /**
+     * Reads the image header only.
+     *
+     * @return Options holding the image size in {@link BitmapFactory.Options#outWidth} and
+     * {@link BitmapFactory.Options#outHeight}, ready to decode the image once <code>inJustDecodeBounds</code> is reset.
+     */
+    static BitmapFactory.Options decodeBounds(Context context, Object model) throws IOException {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(context, model, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Unable to decode bounds of " + model);
+        }
+        return options;
+    }
+
+    static Bitmap decodeStream(Context context, Object model, BitmapFactory.Options options)
+            throws IOException {
+        final InputStream inputStream = Utils.openInputStream(context, model);
+        try {
+            return BitmapFactory.decodeStream(inputStream, null, options);
+        } finally {
+            Utils.closeQuietly(inputStream);
+        }
+    }
+
+    private static class LoadTask implements Callable<Void> {
+
+        private final ImageView imageView;
+        private final Context context;
+        private final Object model;
+        private final int viewportWidth;
+        private final int viewportHeight;
+        private final int displayQuality;
+
+        Future<Void> future;
+
+        LoadTask(ImageView imageView, Object model, int viewportWidth, int viewportHeight, int displayQuality) {
+            this.imageView = imageView;
+            this.context = imageView.getContext().getApplicationContext();
+            this.model = model;
+            this.viewportWidth = viewportWidth;
+            this.viewportHeight = viewportHeight;
+            this.displayQuality = displayQuality;
+        }
+
+        @Override
+        public Void call() {
+            try {
+                final int orientation = ExifOrientation.read(context, model);
+                final Bitmap bitmap = decode(context, model, orientation, viewportWidth, viewportHeight,
+                        displayQuality);
+                MainThreadExecutor.INSTANCE.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(bitmap, orientation);
+                    }
+                });
+            } catch (final Exception e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+                MainThreadExecutor.INSTANCE.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        fail(e);
+                    }
+                });
+            }
+            return null;
+        }
+
+        void cancel() {
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        private boolean isLatest() {
+            if (PENDING_LOADS.get(imageView) != this) {
+                return false;
+            }
+            PENDING_LOADS.remove(imageView);
+            return true;
+        }
+
+        private void deliver(Bitmap bitmap, int orientation) {
+            if (!isLatest()) {
+                BitmapReusePool.get().put(bitmap);
+            } else if (imageView instanceof CropView) {
+                ((CropView) imageView).setImageBitmap(bitmap, orientation);
+            } else {
+                imageView.setImageBitmap(bitmap);
+            }
+        }
+
+        private void fail(Exception e) {
+            if (!isLatest()) {
+                return;
+            }
+            if (model instanceof Integer) {
+                // Not a bitmap resource, e.g. a vector or shape drawable
+                //noinspection deprecation
+                imageView.setImageDrawable(imageView.getResources().getDrawable((Integer) model));
+            } else if (BuildConfig.DEBUG) {
+                Log.e(TAG, "Error attempting to load " + model, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Notified once a {@link CropRequest} completes, on the thread chosen with
+ * {@link CropRequest#callback(CropCallback, java.util.concurrent.Executor)}. Not invoked for cancelled requests,
+ * requests rejected because too many are pending fail with a {@link java.util.concurrent.RejectedExecutionException}.
+ */
+public interface CropCallback {
+
+    void onSuccess(@NonNull CropResult result);
+
+    void onFailure(@NonNull Throwable error);
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.RectF;
+import android.support.annotation.NonNull;
+
+/**
+ * Compact, versioned record of a crop: the area of the image picked by the user and the size to render it at. It is
+ * small enough to upload along with the untouched original image or to store for later, and to render the crop from
+ * there with a {@link CropEngine} or on a server instead of encoding a bitmap on the UI path.
+ * <p>
+ * The area is normalized over the image as displayed, that is the original image with its EXIF orientation applied,
+ * so it applies to any resolution of it. {@link #encode()} gives a string {@link #parse(String)} reads back:
+ * <code>version,left,top,right,bottom,outputWidth,outputHeight</code>.
+ *
+ * @see CropView#getCropDescriptor()
+ * @see CropView#applyDescriptor(CropDescriptor)
+ */
+public final class CropDescriptor {
+
+    /**
+     * Version written by {@link #encode()}, descriptors of later versions are rejected by {@link #parse(String)}.
+     */
+    public static final int VERSION = 1;
+
+    private static final String SEPARATOR = ",";
+    private static final int FIELD_COUNT = 7;
+
+    private final float left;
+    private final float top;
+    private final float right;
+    private final float bottom;
+    private final int outputWidth;
+    private final int outputHeight;
+
+    /**
+     * Describes a crop rendered at the full resolution of the image.
+     *
+     * @param normalizedCropRect Area to crop, every edge within 0..1
+     */
+    public CropDescriptor(@NonNull RectF normalizedCropRect) {
+        this(normalizedCropRect, 0, 0);
+    }
+
+    /**
+     * @param normalizedCropRect Area to crop, every edge within 0..1
+     * @param outputWidth Width to render the crop at, 0 along with <code>outputHeight</code> for the full resolution
+     */
+    public CropDescriptor(@NonNull RectF normalizedCropRect, int outputWidth, int outputHeight) {
+        this(normalizedCropRect.left, normalizedCropRect.top, normalizedCropRect.right, normalizedCropRect.bottom,
+                outputWidth, outputHeight);
+    }
+
+    private CropDescriptor(float left, float top, float right, float bottom, int outputWidth, int outputHeight) {
+        Utils.checkArg(left >= 0 && top >= 0 && right <= 1 && bottom <= 1 && left < right && top < bottom,
+                "crop rect must be a non empty rect within 0..1");
+        Utils.checkArg(outputWidth >= 0 && outputHeight >= 0 && (outputWidth == 0) == (outputHeight == 0),
+                "output size must be either positive or 0 in both dimensions");
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        this.outputWidth = outputWidth;
+        this.outputHeight = outputHeight;
+    }
+
+    /**
+     * @param out Rect which will hold the area to crop, every edge is within 0..1
+     */
+    public void getNormalizedCropRect(@NonNull RectF out) {
+        out.set(left, top, right, bottom);
+    }
+
+    /**
+     * @return Width to render the crop at, 0 for the full resolution of the image.
+     */
+    public int getOutputWidth() {
+        return outputWidth;
+    }
+
+    /**
+     * @return Height to render the crop at, 0 for the full resolution of the image.
+     */
+    public int getOutputHeight() {
+        return outputHeight;
+    }
+
+    /**
+     * @return A copy of this descriptor rendering the crop at <code>width</code> by <code>height</code>.
+     */
+    @NonNull
+    public CropDescriptor withOutputSize(int width, int height) {
+        Utils.checkArg(width > 0 && height > 0, "width and height must be positive");
+        return new CropDescriptor(left, top, right, bottom, width, height);
+    }
+
+    OutputSize getOutputSize() {
+        return outputWidth > 0 ? new OutputSize(outputWidth, outputHeight, false) : OutputSize.NATURAL;
+    }
+
+    /**
+     * @return This descriptor as a short string, see {@link #parse(String)}.
+     */
+    @NonNull
+    public String encode() {
+        return VERSION + SEPARATOR + left + SEPARATOR + top + SEPARATOR + right + SEPARATOR + bottom + SEPARATOR
+                + outputWidth + SEPARATOR + outputHeight;
+    }
+
+    /**
+     * Reads a descriptor written by {@link #encode()}.
+     *
+     * @throws IllegalArgumentException If <code>encoded</code> is malformed or was written by a later version.
+     */
+    @NonNull
+    public static CropDescriptor parse(@NonNull String encoded) {
+        Utils.checkNotNull(encoded, "encoded == null");
+        final String[] fields = encoded.trim().split(SEPARATOR);
+        try {
+            final int version = Integer.parseInt(fields[0]);
+            Utils.checkArg(version >= 1 && version <= VERSION, "Unsupported crop descriptor version " + version);
+            Utils.checkArg(fields.length == FIELD_COUNT, "Malformed crop descriptor " + encoded);
+            return new CropDescriptor(
+                    Float.parseFloat(fields[1]), Float.parseFloat(fields[2]),
+                    Float.parseFloat(fields[3]), Float.parseFloat(fields[4]),
+                    Integer.parseInt(fields[5]), Integer.parseInt(fields[6]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed crop descriptor " + encoded, e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CropDescriptor)) {
+            return false;
+        }
+        final CropDescriptor other = (CropDescriptor) o;
+        return Float.compare(left, other.left) == 0
+                && Float.compare(top, other.top) == 0
+                && Float.compare(right, other.right) == 0
+                && Float.compare(bottom, other.bottom) == 0
+                && outputWidth == other.outputWidth
+                && outputHeight == other.outputHeight;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Float.floatToIntBits(left);
+        result = 31 * result + Float.floatToIntBits(top);
+        result = 31 * result + Float.floatToIntBits(right);
+        result = 31 * result + Float.floatToIntBits(bottom);
+        result = 31 * result + outputWidth;
+        return 31 * result + outputHeight;
+    }
+
+    @Override
+    public String toString() {
+        return "CropDescriptor{" + encode() + '}';
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Crops an image without any {@link CropView}, e.g. to apply a crop picked in the UI at full resolution from a
+ * background job once the UI is gone. Crops are given as the area of the image as displayed, that is with its EXIF
+ * orientation applied, normalized over its size so that they apply to any resolution of it:
+ * <pre>
+ * // In the UI, keep the crop around
+ * cropView.getCropState().getNormalizedCropRect(cropRect);
+ * // Later, off the main thread
+ * new CropEngine(context, uri).writeTo(cropRect, Bitmap.CompressFormat.JPEG, 90, outputStream);
+ * </pre>
+ * Only the pixels inside the crop are decoded. Every method blocks, call them off the main thread.
+ *
+ * @see CropState#getNormalizedCropRect(RectF)
+ */
+public final class CropEngine {
+
+    private final Context context;
+    private final Object model;
+
+    /**
+     * @param model Image to crop, either a {@link android.net.Uri}, a {@link java.io.File}, a {@link String} path or
+     * uri or an {@link Integer} resource id.
+     */
+    public CropEngine(@NonNull Context context, @NonNull Object model) {
+        Utils.checkNotNull(context, "context == null");
+        Utils.checkNotNull(model, "model == null");
+        this.context = context.getApplicationContext();
+        this.model = model;
+    }
+
+    /**
+     * @param normalizedCropRect Area to crop, every edge within 0..1
+     * @return The crop at the full resolution of the image.
+     */
+    @NonNull
+    public Bitmap render(@NonNull RectF normalizedCropRect) throws IOException {
+        return render(normalizedCropRect, OutputSize.NATURAL);
+    }
+
+    /**
+     * Same as {@link #render(RectF)}, scaled to exactly <code>width</code> by <code>height</code>. The image is
+     * subsampled while decoding so that at most twice the output size is ever decoded.
+     */
+    @NonNull
+    public Bitmap render(@NonNull RectF normalizedCropRect, int width, int height) throws IOException {
+        Utils.checkArg(width > 0 && height > 0, "width and height must be positive");
+        return render(normalizedCropRect, new OutputSize(width, height, false));
+    }
+
+    /**
+     * Renders the crop recorded by <code>descriptor</code>, at its output size if it has one.
+     *
+     * @see CropView#getCropDescriptor()
+     */
+    @NonNull
+    public Bitmap render(@NonNull CropDescriptor descriptor) throws IOException {
+        Utils.checkNotNull(descriptor, "descriptor == null");
+        final RectF normalizedCropRect = new RectF();
+        descriptor.getNormalizedCropRect(normalizedCropRect);
+        return render(normalizedCropRect, descriptor.getOutputSize());
+    }
+
+    /**
+     * Renders the crop at the full resolution of the image and compresses it into <code>outputStream</code>, which is
+     * left open.
+     *
+     * @param quality Compression quality to use (must be 0..100)
+     * @return The dimensions and encoding of the crop.
+     */
+    @NonNull
+    public CropResult writeTo(@NonNull RectF normalizedCropRect, @NonNull Bitmap.CompressFormat format, int quality,
+            @NonNull OutputStream outputStream) throws IOException {
+        Utils.checkNotNull(format, "format == null");
+        Utils.checkArg(quality >= 0 && quality <= 100, "quality must be 0..100");
+        final Bitmap cropped = render(normalizedCropRect);
+        try {
+            Utils.checkInterrupted();
+            if (!cropped.compress(format, quality, outputStream)) {
+                throw new IOException("Unable to compress the cropped bitmap");
+            }
+            return new CropResult(cropped.getWidth(), cropped.getHeight()).withEncoding(format, quality);
+        } finally {
+            BitmapReusePool.get().put(cropped);
+        }
+    }
+
+    Bitmap render(RectF normalizedCropRect, OutputSize outputSize) throws IOException {
+        Utils.checkNotNull(normalizedCropRect, "normalizedCropRect == null");
+        final int orientation = ExifOrientation.read(context, model);
+        final RectF storedRect = new RectF();
+        ExifOrientation.toStored(orientation, normalizedCropRect, storedRect);
+        if (outputSize == OutputSize.NATURAL) {
+            return RegionCropper.decodeRegion(context, model, storedRect, orientation, Bitmap.Config.ARGB_8888);
+        }
+
+        // Sizes relative to the crop need the size of the cropped region, only read the header for it
+        final BitmapFactory.Options bounds = BuiltInBitmapLoader.decodeBounds(context, model);
+        final Rect region = RegionCropper.toSourceRect(storedRect, bounds.outWidth, bounds.outHeight);
+        final Rect size = outputSize.resolve(
+                ExifOrientation.getOrientedWidth(orientation, region.width(), region.height()),
+                ExifOrientation.getOrientedHeight(orientation, region.width(), region.height()));
+        return RegionCropper.decodeRegion(context, model, storedRect, orientation, Bitmap.Config.ARGB_8888,
+                size.width(), size.height());
+    }
+}
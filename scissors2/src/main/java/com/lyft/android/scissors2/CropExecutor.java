@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.os.Process;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default executor for crop requests. Runs at most one worker per CPU (up to {@value #MAX_THREADS}) so that only a
+ * handful of cropped bitmaps are alive at once, starts pending tasks by priority and keeps at most
+ * {@link #getQueueCapacity()} of them. When full, whichever of the new task and the queued evictable task that would
+ * start last is rejected: it fails with a {@link RejectedExecutionException} and its callable is told through
+ * {@link Rejectable}, so no task is ever dropped silently.
+ */
+class CropExecutor extends ThreadPoolExecutor {
+
+    private static final int MAX_THREADS = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private static CropExecutor defaultExecutor;
+
+    private final int queueCapacity;
+
+    CropExecutor(int threadCount, int queueCapacity) {
+        super(threadCount, threadCount, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new CropThreadFactory());
+        Utils.checkArg(queueCapacity > 0, "queueCapacity must be positive");
+        this.queueCapacity = queueCapacity;
+        allowCoreThreadTimeOut(true);
+    }
+
+    static synchronized CropExecutor getDefault() {
+        if (defaultExecutor == null) {
+            final int threadCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS));
+            defaultExecutor = new CropExecutor(threadCount, threadCount * 2);
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Implemented by callables that need to know when their task is rejected by a full {@link CropExecutor}, since
+     * they never get called then.
+     */
+    interface Rejectable {
+
+        /**
+         * Invoked on the thread submitting the task that caused the rejection.
+         */
+        void onRejected(RejectedExecutionException e);
+    }
+
+    /**
+     * Runs <code>callable</code> on <code>executor</code>. When it is a {@link CropExecutor}, pending tasks are started by
+     * decreasing <code>priority</code> and the task may be rejected once the queue is full.
+     */
+    static <V> Future<V> submit(Executor executor, Callable<V> callable, int priority) {
+        return submit(executor, callable, priority, true);
+    }
+
+    /**
+     * @param evictable Whether the task may be rejected once the queue is full. Image loads are not, a view would stay
+     * blank otherwise, there are at most as many of them as views showing an image.
+     * @see #submit(Executor, Callable, int)
+     */
+    static <V> Future<V> submit(Executor executor, Callable<V> callable, int priority, boolean evictable) {
+        final CropTask<V> task = new CropTask<>(callable, priority, evictable);
+        if (executor instanceof CropExecutor) {
+            task.owner = (CropExecutor) executor;
+        }
+        executor.execute(task);
+        return task;
+    }
+
+    int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        // Keep the queue homogeneous, tasks need to be comparable with each other
+        final CropTask<?> task = command instanceof CropTask
+                ? (CropTask<?>) command : new CropTask<>(command, null, 0);
+        CropTask<?> rejected = null;
+        synchronized (this) {
+            if (task.evictable && getQueue().size() >= queueCapacity) {
+                final CropTask<?> candidate = findEvictionCandidate();
+                if (candidate == null || task.compareTo(candidate) > 0) {
+                    rejected = task;
+                } else if (getQueue().remove(candidate)) {
+                    rejected = candidate;
+                }
+            }
+            if (rejected != task) {
+                super.execute(task);
+            }
+        }
+        if (rejected != null) {
+            rejected.reject(new RejectedExecutionException("Too many pending tasks"));
+        }
+    }
+
+    /**
+     * @return The queued evictable task that would start last.
+     */
+    private CropTask<?> findEvictionCandidate() {
+        CropTask<?> candidate = null;
+        for (Runnable runnable : getQueue()) {
+            final CropTask<?> task = (CropTask<?>) runnable;
+            if (task.evictable && (candidate == null || task.compareTo(candidate) > 0)) {
+                candidate = task;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * A {@link FutureTask} ordered by decreasing priority, then in submission order.
+     */
+    static class CropTask<V> extends FutureTask<V> implements Comparable<CropTask<?>> {
+
+        final int priority;
+        final boolean evictable;
+        final long sequence = SEQUENCE.getAndIncrement();
+        volatile CropExecutor owner;
+        private final Rejectable rejectable;
+
+        CropTask(Callable<V> callable, int priority, boolean evictable) {
+            super(callable);
+            this.priority = priority;
+            this.evictable = evictable;
+            this.rejectable = callable instanceof Rejectable ? (Rejectable) callable : null;
+        }
+
+        CropTask(Runnable runnable, V result, int priority) {
+            super(runnable, result);
+            this.priority = priority;
+            this.evictable = true;
+            this.rejectable = null;
+        }
+
+        /**
+         * Fails this task without running it.
+         */
+        void reject(RejectedExecutionException e) {
+            setException(e);
+            // Unless it got cancelled in the meantime
+            if (rejectable != null && !isCancelled()) {
+                rejectable.onRejected(e);
+            }
+        }
+
+        @Override
+        protected void done() {
+            // Drop cancelled tasks right away instead of keeping their state alive until a worker polls them
+            final CropExecutor owner = this.owner;
+            if (owner != null && isCancelled()) {
+                owner.remove(this);
+            }
+        }
+
+        @Override
+        public int compareTo(CropTask<?> other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    private static class CropThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "scissors-crop-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+/**
+ * Crop math of {@link TouchManager} and {@link CropState}, free of any Android class so that it runs anywhere, JVM
+ * unit tests included. Positions are those of the image center in view coordinates and scales map pixels of the image
+ * as displayed, that is with its EXIF orientation applied, to view pixels.
+ */
+final class CropGeometry {
+
+    private CropGeometry() {
+    }
+
+    /**
+     * Computes the largest viewport of the given ratio fitting in the available space minus padding on each side.
+     *
+     * @param ratio Width over height of the viewport, 0 to match the ratio of the image
+     * @param out Receives the viewport width then height
+     */
+    static void computeViewportSize(int imageWidth, int imageHeight, int availableWidth, int availableHeight,
+            float ratio, int padding, int[] out) {
+        final float viewAspect = (float) availableWidth / availableHeight;
+        if (Float.compare(0f, ratio) == 0) {
+            ratio = (float) imageWidth / imageHeight;
+        }
+
+        if (ratio > viewAspect) {
+            // viewport is wider than view
+            out[0] = availableWidth - padding * 2;
+            out[1] = (int) (out[0] * (1 / ratio));
+        } else {
+            // viewport is taller than view
+            out[1] = availableHeight - padding * 2;
+            out[0] = (int) (out[1] * ratio);
+        }
+    }
+
+    /**
+     * @return Smallest scale at which the image covers the whole viewport.
+     */
+    static float computeMinimumScale(int imageWidth, int imageHeight, int viewportWidth, int viewportHeight) {
+        return Math.max((float) viewportWidth / imageWidth, (float) viewportHeight / imageHeight);
+    }
+
+    static float clampScale(float scale, float minimumScale, float maximumScale) {
+        return Math.max(minimumScale, Math.min(scale, maximumScale));
+    }
+
+    /**
+     * @return How far the image center can move away from the viewport center along one axis, once scaled to
+     * <code>scaledImageSize</code>.
+     */
+    static int computeLimit(int scaledImageSize, int viewportSize) {
+        return (scaledImageSize - viewportSize) / 2;
+    }
+
+    /**
+     * Keeps the image covering the viewport along one axis.
+     *
+     * @param center Center of the view
+     * @param limit See {@link #computeLimit(int, int)}
+     * @param centerOffset Distance from the viewport center to the view center
+     * @return <code>position</code> moved back within the limits.
+     */
+    static float clampPosition(float position, int center, int limit, int centerOffset) {
+        if (position <= center - (limit + centerOffset)) {
+            return center - (limit + centerOffset);
+        } else if (position >= center + (limit - centerOffset)) {
+            return center + (limit - centerOffset);
+        }
+        return position;
+    }
+
+    /**
+     * @param frameEdge Position of a frame edge in the view
+     * @return The image coordinate, normalized over <code>imageSize</code> within 0..1, displayed at
+     * <code>frameEdge</code>.
+     */
+    static float normalizeEdge(float frameEdge, float position, float scale, int imageSize) {
+        return Math.max(0f, Math.min((frameEdge - position) / scale / imageSize + 0.5f, 1f));
+    }
+
+    /**
+     * @return Scale at which a crop of <code>cropWidth</code> by <code>cropHeight</code> image pixels covers the frame.
+     */
+    static float computeScaleToCover(float frameWidth, float frameHeight, float cropWidth, float cropHeight) {
+        return Math.max(frameWidth / cropWidth, frameHeight / cropHeight);
+    }
+
+    /**
+     * Inverse of {@link #normalizeEdge(float, float, float, int)}.
+     *
+     * @return Image position displaying the normalized coordinate <code>normalizedEdge</code> at
+     * <code>frameEdge</code>.
+     */
+    static float computePosition(float frameEdge, float normalizedEdge, float scale, int imageSize) {
+        return frameEdge - (normalizedEdge - 0.5f) * imageSize * scale;
+    }
+}
@@ -1,17 +1,39 @@
 package com.lyft.android.scissors2;
 
+import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 public class CropRequest {
 
+  private static final String TAG = "scissors.CropRequest";
+
   private final CropView cropView;
   private Bitmap.CompressFormat format = Bitmap.CompressFormat.JPEG;
   private int quality = CropViewConfig.DEFAULT_IMAGE_QUALITY;
+  private long maxBytes;
+  private int minQuality = CropViewConfig.DEFAULT_MINIMUM_IMAGE_QUALITY;
+  private Object sourceModel;
+  private OutputSize outputSize;
+  private boolean highQualityScaling = true;
+  private int tileHeight;
+  private Executor executor;
+  private int priority;
+  private CropCallback callback;
+  private Executor callbackExecutor;
 
   CropRequest(@NonNull CropView cropView) {
     Utils.checkNotNull(cropView, "cropView == null");
@@ -41,26 +63,360 @@ public class CropRequest {
   }
 
   /**
-   * Asynchronously flush cropped bitmap into provided file, creating parent directory if required. This is performed in another
-   * thread.
+   * Encode at the highest quality, up to the one set through {@link #quality(int)}, that fits in <code>maxBytes</code>.
+   * Qualities are searched on a downsampled trial encode so that the full image is only compressed a couple of times.
+   * The chosen quality is reported by {@link CropResult#getQuality()}.
+   * <p>
+   * With {@link Bitmap.CompressFormat#WEBP} on Android Q and above, the lossless encoding is kept when it fits. PNG has
+   * no quality to trade and is encoded as is. Disables {@link #tiled()}, the whole output has to be measured.
+   *
+   * @return current request for chaining.
+   * @see #maxBytes(long, int)
+   */
+  public CropRequest maxBytes(long maxBytes) {
+    return maxBytes(maxBytes, CropViewConfig.DEFAULT_MINIMUM_IMAGE_QUALITY);
+  }
+
+  /**
+   * Same as {@link #maxBytes(long)}, never going below <code>minQuality</code>. If even <code>minQuality</code> does not
+   * fit, the output is encoded at <code>minQuality</code> and is larger than <code>maxBytes</code>.
+   *
+   * @param minQuality Lowest acceptable quality (must be 0..100)
+   * @return current request for chaining.
+   */
+  public CropRequest maxBytes(long maxBytes, int minQuality) {
+    Utils.checkArg(maxBytes > 0, "maxBytes must be positive");
+    Utils.checkArg(minQuality >= 0 && minQuality <= 100, "minQuality must be 0..100");
+    this.maxBytes = maxBytes;
+    this.minQuality = minQuality;
+    return this;
+  }
+
+  /**
+   * Crop from the original image instead of the {@link Bitmap} displayed by {@link CropView}. Only the region inside the
+   * viewport is decoded, at the full resolution of the original image.
+   *
+   * @param model Original image the displayed {@link Bitmap} was loaded from, either a {@link android.net.Uri}, a
+   * {@link File}, a {@link String} path or uri or an {@link Integer} resource id.
+   * @return current request for chaining.
+   */
+  public CropRequest fromSource(@Nullable Object model) {
+    this.sourceModel = model;
+    return this;
+  }
+
+  /**
+   * Scale the crop to exactly <code>width</code> by <code>height</code>. It is rendered straight at that size, the scale
+   * being folded into the crop matrix, rather than rendered at full size and scaled afterwards. Should keep the viewport
+   * ratio, the crop is stretched otherwise.
+   *
+   * @return current request for chaining.
+   * @see #maxOutputSize(int, int)
+   */
+  public CropRequest outputSize(int width, int height) {
+    Utils.checkArg(width > 0 && height > 0, "width and height must be positive");
+    this.outputSize = new OutputSize(width, height, false);
+    return this;
+  }
+
+  /**
+   * Scale the crop down to fit in <code>maxWidth</code> by <code>maxHeight</code>, keeping its ratio. The crop is the
+   * size of the viewport, or of the cropped region of the original image with {@link #fromSource(Object)}, and is left
+   * as is when it already fits.
+   *
+   * @return current request for chaining.
+   * @see #outputSize(int, int)
+   */
+  public CropRequest maxOutputSize(int maxWidth, int maxHeight) {
+    Utils.checkArg(maxWidth > 0 && maxHeight > 0, "maxWidth and maxHeight must be positive");
+    this.outputSize = new OutputSize(maxWidth, maxHeight, true);
+    return this;
+  }
+
+  /**
+   * Whether to downsample the displayed {@link Bitmap} in 2:1 steps before drawing it at less than half its size,
+   * defaults to <code>true</code>. A single filtered draw only samples some of the pixels past 2:1 and aliases, disable
+   * to trade that sharpness for speed. Crops from the original image are subsampled by the decoder either way.
+   *
+   * @return current request for chaining.
+   */
+  public CropRequest highQualityScaling(boolean enabled) {
+    this.highQualityScaling = enabled;
+    return this;
+  }
+
+  /**
+   * Render and encode the crop in horizontal bands of {@value CropViewConfig#DEFAULT_TILE_HEIGHT} rows.
+   *
+   * @return current request for chaining.
+   * @see #tiled(int)
+   */
+  public CropRequest tiled() {
+    return tiled(CropViewConfig.DEFAULT_TILE_HEIGHT);
+  }
+
+  /**
+   * Render and encode the crop in horizontal bands streamed to the output, so peak memory is bounded by the band size
+   * rather than the output size. Mostly useful along with {@link #fromSource(Object)} for very large outputs.
+   * <p>
+   * Only {@link Bitmap.CompressFormat#JPEG} and {@link Bitmap.CompressFormat#PNG} can be streamed, other formats are
+   * rendered and compressed as a whole. So are crops from the original image scaled through
+   * {@link #outputSize(int, int)} or {@link #maxOutputSize(int, int)}, which bound the output size already.
+   *
+   * @param tileHeight Number of rows rendered at once
+   * @return current request for chaining.
+   */
+  public CropRequest tiled(int tileHeight) {
+    Utils.checkArg(tileHeight > 0, "tileHeight must be positive");
+    this.tileHeight = tileHeight;
+    return this;
+  }
+
+  /**
+   * Executor to render and compress on, defaults to a shared pool running at most one crop per CPU.
+   *
+   * @return current request for chaining.
+   */
+  public CropRequest executor(@NonNull Executor executor) {
+    Utils.checkNotNull(executor, "executor == null");
+    this.executor = executor;
+    return this;
+  }
+
+  /**
+   * Priority of this request on the default executor, pending requests with a higher priority are started first. Defaults
+   * to 0. When too many requests are pending, the one that would start last fails with a
+   * {@link java.util.concurrent.RejectedExecutionException}, image loads are never rejected.
+   *
+   * @return current request for chaining.
+   */
+  public CropRequest priority(int priority) {
+    this.priority = priority;
+    return this;
+  }
+
+  /**
+   * Get notified on the main thread once this request completes.
+   *
+   * @return current request for chaining.
+   * @see #callback(CropCallback, Executor)
+   */
+  public CropRequest callback(@Nullable CropCallback callback) {
+    return callback(callback, MainThreadExecutor.INSTANCE);
+  }
+
+  /**
+   * Get notified once this request completes, with either the {@link CropResult} or the error that caused it to fail. The
+   * callback is not invoked if the request gets cancelled.
+   *
+   * @param callbackExecutor Executor the callback is invoked on
+   * @return current request for chaining.
+   */
+  public CropRequest callback(@Nullable CropCallback callback, @NonNull Executor callbackExecutor) {
+    Utils.checkNotNull(callbackExecutor, "callbackExecutor == null");
+    this.callback = callback;
+    this.callbackExecutor = callbackExecutor;
+    return this;
+  }
+
+  /**
+   * Asynchronously flush cropped bitmap into provided file, creating parent directory if required. Only a snapshot of the
+   * current state is taken on the calling thread, rendering and compression are performed in another thread. Any previous
+   * request of the same {@link CropView} still in progress is cancelled.
    *
    * @param file Must have permissions to write, will be created if doesn't exist or overwrite if it does.
-   * @return {@link Future} used to cancel or wait for this request.
+   * @return {@link Future} used to cancel or wait for this request, failures are reported as an
+   * {@link java.util.concurrent.ExecutionException}.
    */
-  public Future<Void> into(@NonNull File file) {
-    final Bitmap croppedBitmap = cropView.crop();
-    return Utils.flushToFile(croppedBitmap, format, quality, file);
+  public Future<CropResult> into(@NonNull File file) {
+    return submit(Utils.flushToFile(createWriter(), file));
   }
 
   /**
-   * Asynchronously flush cropped bitmap into provided stream.
+   * Asynchronously flush cropped bitmap into provided stream. Only a snapshot of the current state is taken on the calling
+   * thread, rendering and compression are performed in another thread. Any previous request of the same {@link CropView}
+   * still in progress is cancelled.
    *
    * @param outputStream Stream to write to
    * @param closeWhenDone wetter or not to close provided stream once flushing is done
-   * @return {@link Future} used to cancel or wait for this request.
+   * @return {@link Future} used to cancel or wait for this request, failures are reported as an
+   * {@link java.util.concurrent.ExecutionException}.
+   */
+  public Future<CropResult> into(@NonNull OutputStream outputStream, boolean closeWhenDone) {
+    return submit(Utils.flushToStream(createWriter(), outputStream, closeWhenDone));
+  }
+
+  private Future<CropResult> submit(Callable<CropResult> flush) {
+    final Executor executor = this.executor != null ? this.executor : CropExecutor.getDefault();
+    final Callable<CropResult> task = callback != null ? deliverTo(callback, callbackExecutor, flush) : flush;
+    return cropView.trackCrop(CropExecutor.submit(executor, task, priority));
+  }
+
+  private static Callable<CropResult> deliverTo(CropCallback callback, Executor callbackExecutor,
+      Callable<CropResult> flush) {
+    return new DeliveringTask(callback, callbackExecutor, flush);
+  }
+
+  /**
+   * Reports the outcome of a crop to its callback, including a rejection by a full {@link CropExecutor}.
+   */
+  private static class DeliveringTask implements Callable<CropResult>, CropExecutor.Rejectable {
+
+    private final CropCallback callback;
+    private final Executor callbackExecutor;
+    private final Callable<CropResult> flush;
+
+    DeliveringTask(CropCallback callback, Executor callbackExecutor, Callable<CropResult> flush) {
+      this.callback = callback;
+      this.callbackExecutor = callbackExecutor;
+      this.flush = flush;
+    }
+
+    @Override
+    public CropResult call() throws Exception {
+      try {
+        final CropResult result = flush.call();
+        callbackExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            callback.onSuccess(result);
+          }
+        });
+        return result;
+      } catch (final Throwable error) {
+        if (!Thread.currentThread().isInterrupted()) {
+          deliverFailure(error);
+        }
+        throw error;
+      }
+    }
+
+    @Override
+    public void onRejected(RejectedExecutionException e) {
+      deliverFailure(e);
+    }
+
+    private void deliverFailure(final Throwable error) {
+      callbackExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          callback.onFailure(error);
+        }
+      });
+    }
+  }
+
+  private CropWriter createWriter() {
+    // Only snapshot the state here, rendering and encoding both happen on the executor
+    final CropState state = cropView.snapshotState();
+    final Context context = cropView.getContext().getApplicationContext();
+    final Object model = sourceModel;
+    // Displayed bitmaps decoded with a reduced config are cropped from the original at the same size instead
+    final Object fullQualityModel = model == null && cropView.isDisplayBitmapReduced()
+        ? cropView.getSourceModel() : null;
+    final Bitmap.CompressFormat format = this.format;
+    final int quality = this.quality;
+    final OutputSize outputSize = this.outputSize != null ? this.outputSize : OutputSize.NATURAL;
+    final boolean highQualityScaling = this.highQualityScaling;
+    final boolean streamable = tileHeight > 0 && maxBytes <= 0 && (model == null || outputSize == OutputSize.NATURAL);
+    final BandEncoder encoder = streamable ? TiledCropWriter.createEncoder(format, quality) : null;
+    if (state != null && encoder != null) {
+      final CropWriter tiled = new TiledCropWriter(
+          createBandSource(context, model, state, outputSize, highQualityScaling, tileHeight), encoder, tileHeight);
+      return new CropWriter() {
+        @Override
+        public CropResult writeTo(OutputStream outputStream) throws Exception {
+          return tiled.writeTo(outputStream).withEncoding(format, quality);
+        }
+      };
+    }
+
+    final SizeTargetedEncoder sizeTargetedEncoder = maxBytes > 0
+        ? new SizeTargetedEncoder(format, Math.min(minQuality, quality), quality, maxBytes) : null;
+    return new CropWriter() {
+      @Override
+      public CropResult writeTo(OutputStream outputStream) throws Exception {
+        if (state == null) {
+          throw new IllegalStateException("No bitmap to crop");
+        }
+        Utils.checkInterrupted();
+        final Bitmap cropped = render(context, model, fullQualityModel, state, outputSize, highQualityScaling);
+        try {
+          Utils.checkInterrupted();
+          if (sizeTargetedEncoder != null) {
+            final int chosenQuality = sizeTargetedEncoder.encode(cropped, outputStream);
+            return new CropResult(cropped.getWidth(), cropped.getHeight()).withEncoding(format, chosenQuality);
+          }
+          final boolean compressed = cropped.compress(format, quality, outputStream);
+          // A failing write only makes compress return false, tell cancellation apart from actual errors
+          Utils.checkInterrupted();
+          if (!compressed) {
+            throw new IOException("Unable to compress the cropped bitmap");
+          }
+          return new CropResult(cropped.getWidth(), cropped.getHeight()).withEncoding(format, quality);
+        } finally {
+          BitmapReusePool.get().put(cropped);
+        }
+      }
+    };
+  }
+
+  private static Callable<TiledCropWriter.BandSource> createBandSource(final Context context, final Object model,
+      final CropState state, final OutputSize outputSize, final boolean highQualityScaling, final int tileHeight) {
+    return new Callable<TiledCropWriter.BandSource>() {
+      @Override
+      public TiledCropWriter.BandSource call() throws Exception {
+        if (model != null) {
+          final RectF cropRect = new RectF();
+          final int orientation = getStoredCropRect(context, model, state, cropRect);
+          return new TiledCropWriter.RegionSource(
+              RegionCropper.newDecoder(context, model), cropRect, orientation, Bitmap.Config.ARGB_8888);
+        }
+
+        final Rect size = outputSize.resolve(state.getViewportWidth(), state.getViewportHeight());
+        final Matrix cropMatrix = new Matrix();
+        final Bitmap bitmap = state.getRenderBitmap(cropMatrix, size.width(), size.height(), highQualityScaling);
+        return new TiledCropWriter.BitmapSource(bitmap, bitmap != state.getBitmap(), cropMatrix,
+            size.width(), size.height(), tileHeight);
+      }
+    };
+  }
+
+  private static Bitmap render(Context context, Object model, Object fullQualityModel, CropState state,
+      OutputSize outputSize, boolean highQualityScaling) throws IOException {
+    final Rect size = outputSize.resolve(state.getViewportWidth(), state.getViewportHeight());
+    if (model == null && fullQualityModel != null) {
+      final RectF cropRect = new RectF();
+      final int orientation = getStoredCropRect(context, fullQualityModel, state, cropRect);
+      try {
+        return RegionCropper.decodeRegion(context, fullQualityModel, cropRect, orientation, Bitmap.Config.ARGB_8888,
+            size.width(), size.height());
+      } catch (IOException e) {
+        Utils.checkInterrupted();
+        // Not a format the region decoder supports, settle for the displayed bitmap
+        if (BuildConfig.DEBUG) {
+          Log.w(TAG, "Unable to region decode " + fullQualityModel, e);
+        }
+      }
+    }
+    if (model == null) {
+      return state.render(size.width(), size.height(), highQualityScaling);
+    }
+    final RectF cropRect = new RectF();
+    state.getNormalizedCropRect(cropRect);
+    return new CropEngine(context, model).render(cropRect, outputSize);
+  }
+
+  /**
+   * The crop rect is relative to the image as displayed, that is the original image with its EXIF orientation applied
+   * whichever loader displayed it.
+   *
+   * @return Orientation of the original image.
    */
-  public Future<Void> into(@NonNull OutputStream outputStream, boolean closeWhenDone) {
-    final Bitmap croppedBitmap = cropView.crop();
-    return Utils.flushToStream(croppedBitmap, format, quality, outputStream, closeWhenDone);
+  private static int getStoredCropRect(Context context, Object model, CropState state, RectF out) {
+    final int orientation = ExifOrientation.read(context, model);
+    state.getNormalizedCropRect(out);
+    ExifOrientation.toStored(orientation, out, out);
+    return orientation;
   }
 }
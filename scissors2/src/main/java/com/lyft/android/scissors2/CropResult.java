@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+
+/**
+ * Outcome of a successful {@link CropRequest}.
+ */
+public final class CropResult {
+
+    private final File file;
+    private final long byteCount;
+    private final int width;
+    private final int height;
+    private final long encodeTimeMillis;
+    private final Bitmap.CompressFormat format;
+    private final int quality;
+
+    CropResult(int width, int height) {
+        this(null, 0, width, height, 0, null, 0);
+    }
+
+    CropResult(@Nullable File file, long byteCount, int width, int height, long encodeTimeMillis) {
+        this(file, byteCount, width, height, encodeTimeMillis, null, 0);
+    }
+
+    private CropResult(@Nullable File file, long byteCount, int width, int height, long encodeTimeMillis,
+            @Nullable Bitmap.CompressFormat format, int quality) {
+        this.file = file;
+        this.byteCount = byteCount;
+        this.width = width;
+        this.height = height;
+        this.encodeTimeMillis = encodeTimeMillis;
+        this.format = format;
+        this.quality = quality;
+    }
+
+    /**
+     * @return The file written to or <code>null</code> when cropping into a stream.
+     */
+    @Nullable
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return Number of bytes written.
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * @return Width in pixels of the cropped image.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return Height in pixels of the cropped image.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return Time spent rendering and encoding the cropped image, in milliseconds.
+     */
+    public long getEncodeTimeMillis() {
+        return encodeTimeMillis;
+    }
+
+    /**
+     * @return Format the cropped image was encoded with.
+     */
+    @Nullable
+    public Bitmap.CompressFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return Quality the cropped image was encoded at, the one picked to fit the budget when cropping with
+     * {@link CropRequest#maxBytes(long)}.
+     */
+    public int getQuality() {
+        return quality;
+    }
+
+    CropResult withOutput(@Nullable File file, long byteCount, long encodeTimeMillis) {
+        return new CropResult(file, byteCount, width, height, encodeTimeMillis, format, quality);
+    }
+
+    CropResult withEncoding(Bitmap.CompressFormat format, int quality) {
+        return new CropResult(file, byteCount, width, height, encodeTimeMillis, format, quality);
+    }
+
+    @Override
+    public String toString() {
+        return "CropResult{"
+                + "file=" + file
+                + ", byteCount=" + byteCount
+                + ", width=" + width
+                + ", height=" + height
+                + ", encodeTimeMillis=" + encodeTimeMillis
+                + ", format=" + format
+                + ", quality=" + quality
+                + '}';
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.OutputStream;
+
+/**
+ * One output of a {@link BatchCropRequest}: a region of the source image, how to scale and encode it and where to
+ * write it.
+ */
+public final class CropSpec {
+
+    final Rect region;
+    final File file;
+    final OutputStream outputStream;
+    final boolean closeWhenDone;
+    Bitmap.CompressFormat format = Bitmap.CompressFormat.JPEG;
+    int quality = CropViewConfig.DEFAULT_IMAGE_QUALITY;
+    OutputSize outputSize = OutputSize.NATURAL;
+
+    /**
+     * @param region Area to crop in pixels of the source image as displayed, that is with its EXIF orientation applied.
+     * Clipped to the image bounds.
+     * @param file Must have permissions to write, will be created if doesn't exist or overwrite if it does.
+     */
+    public CropSpec(@NonNull Rect region, @NonNull File file) {
+        this(region, file, null, false);
+        Utils.checkNotNull(file, "file == null");
+    }
+
+    /**
+     * @param region Area to crop in pixels of the source image as displayed, that is with its EXIF orientation applied.
+     * Clipped to the image bounds.
+     * @param closeWhenDone wetter or not to close provided stream once flushing is done
+     */
+    public CropSpec(@NonNull Rect region, @NonNull OutputStream outputStream, boolean closeWhenDone) {
+        this(region, null, outputStream, closeWhenDone);
+        Utils.checkNotNull(outputStream, "outputStream == null");
+    }
+
+    private CropSpec(Rect region, @Nullable File file, @Nullable OutputStream outputStream, boolean closeWhenDone) {
+        Utils.checkNotNull(region, "region == null");
+        Utils.checkArg(!region.isEmpty(), "region must not be empty");
+        this.region = new Rect(region);
+        this.file = file;
+        this.outputStream = outputStream;
+        this.closeWhenDone = closeWhenDone;
+    }
+
+    /**
+     * Compression format to use, defaults to {@link Bitmap.CompressFormat#JPEG}.
+     *
+     * @return current spec for chaining.
+     */
+    public CropSpec format(@NonNull Bitmap.CompressFormat format) {
+        Utils.checkNotNull(format, "format == null");
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * Compression quality to use (must be 0..100), defaults to {@value CropViewConfig#DEFAULT_IMAGE_QUALITY}.
+     *
+     * @return current spec for chaining.
+     */
+    public CropSpec quality(int quality) {
+        Utils.checkArg(quality >= 0 && quality <= 100, "quality must be 0..100");
+        this.quality = quality;
+        return this;
+    }
+
+    /**
+     * Scale the crop to exactly <code>width</code> by <code>height</code>, see
+     * {@link CropRequest#outputSize(int, int)}.
+     *
+     * @return current spec for chaining.
+     */
+    public CropSpec outputSize(int width, int height) {
+        Utils.checkArg(width > 0 && height > 0, "width and height must be positive");
+        this.outputSize = new OutputSize(width, height, false);
+        return this;
+    }
+
+    /**
+     * Scale the crop down to fit in <code>maxWidth</code> by <code>maxHeight</code> keeping its ratio, see
+     * {@link CropRequest#maxOutputSize(int, int)}.
+     *
+     * @return current spec for chaining.
+     */
+    public CropSpec maxOutputSize(int maxWidth, int maxHeight) {
+        Utils.checkArg(maxWidth > 0 && maxHeight > 0, "maxWidth and maxHeight must be positive");
+        this.outputSize = new OutputSize(maxWidth, maxHeight, true);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "CropSpec{"
+                + "region=" + region
+                + ", file=" + file
+                + ", format=" + format
+                + ", quality=" + quality
+                + '}';
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.support.annotation.NonNull;
+
+/**
+ * Immutable snapshot of what {@link CropView} displays inside its viewport: the {@link Bitmap} and its EXIF orientation
+ * along with the position, scale and frame rect of the {@link TouchManager} at the time it was taken. Safe to hand over
+ * to another thread.
+ * <p>
+ * The crop it describes, {@link #getNormalizedCropRect(RectF)}, applies to any resolution of the image, e.g. through a
+ * {@link CropEngine} once the view is gone.
+ *
+ * @see CropView#getCropState()
+ */
+public final class CropState {
+
+    private final Bitmap bitmap;
+    private final int orientation;
+    private final int bitmapWidth;
+    private final int bitmapHeight;
+    private final float scale;
+    private final float positionX;
+    private final float positionY;
+    private final float frameLeft;
+    private final float frameTop;
+    private final float frameRight;
+    private final float frameBottom;
+
+    /**
+     * @param orientation EXIF orientation <code>bitmap</code> is displayed with, see {@link ExifOrientation}
+     */
+    CropState(Bitmap bitmap, int orientation, float scale, float positionX, float positionY, RectF frameRect) {
+        this.bitmap = bitmap;
+        this.orientation = orientation;
+        this.bitmapWidth = ExifOrientation.getOrientedWidth(orientation, bitmap.getWidth(), bitmap.getHeight());
+        this.bitmapHeight = ExifOrientation.getOrientedHeight(orientation, bitmap.getWidth(), bitmap.getHeight());
+        this.scale = scale;
+        this.positionX = positionX;
+        this.positionY = positionY;
+        this.frameLeft = frameRect.left;
+        this.frameTop = frameRect.top;
+        this.frameRight = frameRect.right;
+        this.frameBottom = frameRect.bottom;
+    }
+
+    Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    /**
+     * @return EXIF orientation the displayed {@link Bitmap} is drawn with.
+     */
+    public int getOrientation() {
+        return orientation;
+    }
+
+    /**
+     * @return Scale from pixels of the displayed {@link Bitmap}, once oriented, to view pixels.
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * @return Width of the viewport, that is of the crop rendered by {@link CropView#crop()}.
+     */
+    public int getViewportWidth() {
+        return (int) (frameRight - frameLeft);
+    }
+
+    /**
+     * @return Height of the viewport, that is of the crop rendered by {@link CropView#crop()}.
+     */
+    public int getViewportHeight() {
+        return (int) (frameBottom - frameTop);
+    }
+
+    /**
+     * Obtain the matrix mapping the {@link Bitmap} into the cropped image.
+     */
+    void getCropMatrix(Matrix out) {
+        ExifOrientation.getMatrix(orientation, bitmap.getWidth(), bitmap.getHeight(), out);
+        out.postTranslate(-bitmapWidth / 2.0f, -bitmapHeight / 2.0f);
+        out.postScale(scale, scale);
+        out.postTranslate(positionX - frameLeft, positionY - frameTop);
+    }
+
+    /**
+     * Obtain the matrix mapping the {@link Bitmap} into the cropped image scaled to <code>width</code> by
+     * <code>height</code>.
+     */
+    void getCropMatrix(Matrix out, int width, int height) {
+        getCropMatrix(out);
+        out.postScale((float) width / getViewportWidth(), (float) height / getViewportHeight());
+    }
+
+    /**
+     * Obtain the {@link Bitmap} to draw through <code>matrix</code> into a crop of <code>width</code> by
+     * <code>height</code>, along with that matrix. Unless it is {@link #getBitmap()}, the caller owns the returned
+     * bitmap and must put it back in the {@link BitmapReusePool} once done.
+     *
+     * @param highQuality Whether to downsample the bitmap first when it is drawn at less than half its size
+     * @see #getSoftwareBitmap()
+     */
+    Bitmap getRenderBitmap(Matrix matrix, int width, int height, boolean highQuality) {
+        getCropMatrix(matrix, width, height);
+        final Bitmap source = getSoftwareBitmap();
+        if (!highQuality) {
+            return source;
+        }
+        final float outputScale = scale * Math.min((float) width / getViewportWidth(),
+                (float) height / getViewportHeight());
+        final BitmapReusePool pool = BitmapReusePool.get();
+        final Bitmap reduced = pool.downsample(source, TileRenderer.computeSampleSize(outputScale));
+        if (reduced == source) {
+            return source;
+        }
+        if (source != bitmap) {
+            pool.put(source);
+        }
+        matrix.preScale((float) bitmap.getWidth() / reduced.getWidth(),
+                (float) bitmap.getHeight() / reduced.getHeight());
+        return reduced;
+    }
+
+    /**
+     * Obtain the area of the image inside the viewport, normalized over the image size as displayed so it can be
+     * applied to any resolution of the same image.
+     *
+     * @param out Rect which will hold the result, every edge is within 0..1
+     */
+    public void getNormalizedCropRect(@NonNull RectF out) {
+        out.left = CropGeometry.normalizeEdge(frameLeft, positionX, scale, bitmapWidth);
+        out.top = CropGeometry.normalizeEdge(frameTop, positionY, scale, bitmapHeight);
+        out.right = CropGeometry.normalizeEdge(frameRight, positionX, scale, bitmapWidth);
+        out.bottom = CropGeometry.normalizeEdge(frameBottom, positionY, scale, bitmapHeight);
+    }
+
+    /**
+     * Obtain a {@link Bitmap} a software {@link Canvas} can draw. Displayed bitmaps living in graphics memory only are
+     * copied, the caller owns the copy and must recycle it once done.
+     */
+    Bitmap getSoftwareBitmap() {
+        if (!Utils.isHardware(bitmap.getConfig())) {
+            return bitmap;
+        }
+        final Bitmap copy = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+        if (copy == null) {
+            throw new IllegalStateException("Unable to copy hardware bitmap");
+        }
+        return copy;
+    }
+
+    /**
+     * Draws the viewport content into a {@link Bitmap} from the {@link BitmapReusePool}, can be called from any thread.
+     */
+    Bitmap render() {
+        return render(getViewportWidth(), getViewportHeight(), false);
+    }
+
+    /**
+     * Draws the viewport content scaled to <code>width</code> by <code>height</code> in a single pass, into a
+     * {@link Bitmap} from the {@link BitmapReusePool}. Can be called from any thread.
+     *
+     * @param highQuality Whether to downsample the bitmap first when it is drawn at less than half its size
+     */
+    Bitmap render(int width, int height, boolean highQuality) {
+        final Matrix matrix = new Matrix();
+        final Bitmap source = getRenderBitmap(matrix, width, height, highQuality);
+        final Bitmap.Config srcConfig = source.getConfig();
+        final Bitmap.Config config = srcConfig == null ? Bitmap.Config.ARGB_8888 : srcConfig;
+        final Bitmap dst = BitmapReusePool.get().obtain(width, height, config);
+
+        new Canvas(dst).drawBitmap(source, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        if (source != bitmap) {
+            BitmapReusePool.get().put(source);
+        }
+        return dst;
+    }
+}
@@ -18,18 +18,22 @@ package com.lyft.android.scissors2;
 import android.app.Activity;
 import android.app.Fragment;
 import android.content.Context;
+import android.content.ContextWrapper;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.media.ExifInterface;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.support.annotation.ColorInt;
 import android.support.annotation.DrawableRes;
 import android.support.annotation.IntDef;
@@ -43,6 +47,7 @@ import java.io.File;
 import java.io.OutputStream;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.concurrent.Future;
 
 /**
  * An {@link ImageView} with a fixed viewport and cropping capabilities.
@@ -52,17 +57,74 @@ public class CropView extends ImageView {
     private TouchManager touchManager;
     private CropViewConfig config;
 
-    private Paint viewportPaint = new Paint();
     private Paint bitmapPaint = new Paint();
+    private Paint handlePaint = new Paint();
 
     private Bitmap bitmap;
+    private int bitmapOrientation = ExifInterface.ORIENTATION_NORMAL;
     private Matrix transform = new Matrix();
+    private final Matrix positioning = new Matrix();
     private Extensions extensions;
+    private Future<?> pendingCrop;
+
+    private int loadGeneration;
+    private boolean awaitingLoad;
+    private boolean previewing;
+    private Object loadingModel;
+    private FillViewportCache.Key loadingCacheKey;
+    private boolean loadingRecyclesBitmap;
+    private boolean bitmapRetainable;
+    private long retainedBitmapId;
+    private PendingRestore pendingRestore;
+    private Object sourceModel;
+
+    private boolean tiledRenderingEnabled;
+    private TileRenderer tileRenderer;
+    private final Runnable tileInvalidator = new Runnable() {
+        @Override
+        public void run() {
+            invalidate();
+        }
+    };
+
+    private final Rect touchDirtyRect = new Rect();
+    private final Rect pendingDirtyRect = new Rect();
+    private boolean redrawPending;
+    private final Runnable redrawRunnable = new Runnable() {
+        @Override
+        public void run() {
+            redrawPending = false;
+            invalidate(pendingDirtyRect);
+            pendingDirtyRect.setEmpty();
+        }
+    };
 
     private HandleSizeChangeListener listener = null;
     private float handleCircleRadius = 8;
 
 
+    /**
+     * Corresponds to the values in {@link com.lyft.android.scissors2.R.attr#cropviewDisplayQuality}
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({DisplayQuality.FULL, DisplayQuality.LOW_MEMORY, DisplayQuality.HARDWARE})
+    public @interface DisplayQuality {
+
+        /**
+         * {@link Bitmap.Config#ARGB_8888}
+         */
+        int FULL = 0;
+        /**
+         * {@link Bitmap.Config#RGB_565} for images without alpha, halves the memory used.
+         */
+        int LOW_MEMORY = 1;
+        /**
+         * {@link Bitmap.Config#HARDWARE} on API 26+, the bitmap only lives in graphics memory. Only applies to the
+         * {@link BuiltInBitmapLoader}, same as {@link #FULL} otherwise.
+         */
+        int HARDWARE = 2;
+    }
+
     /**
      * Corresponds to the values in {@link com.lyft.android.scissors2.R.attr#cropviewShape}
      */
@@ -76,8 +138,7 @@ public class CropView extends ImageView {
 
     @Shape
     private int shape = Shape.RECTANGLE;
-    private Path ovalPath;
-    private RectF ovalRect;
+    private final ViewportOverlay viewportOverlay = new ViewportOverlay();
 
     public CropView(Context context) {
         super(context);
@@ -99,8 +160,9 @@ public class CropView extends ImageView {
         setViewportOverlayColor(config.getViewportOverlayColor());
         shape = config.shape();
 
-        // We need anti-aliased Paint to smooth the curved edges
-        viewportPaint.setFlags(viewportPaint.getFlags() | Paint.ANTI_ALIAS_FLAG);
+        handlePaint.setStyle(Paint.Style.FILL);
+        handlePaint.setColor(config.getHandleColor());
+        handlePaint.setStrokeWidth(config.getHandleStrokeWidth());
     }
 
     @Override
@@ -112,16 +174,20 @@ public class CropView extends ImageView {
         }
 
         drawBitmap(canvas);
-        if (shape == Shape.RECTANGLE) {
-            drawSquareOverlay(canvas);
-        } else {
-            drawOvalOverlay(canvas);
+        if (tileRenderer != null) {
+            tileRenderer.draw(canvas, positioning, getOrientedBitmapWidth(), getOrientedBitmapHeight(), getWidth(),
+                    getHeight(), bitmapPaint);
         }
+        viewportOverlay.draw(canvas, touchManager.getFrameRect(), getWidth(), getHeight(), shape);
+        drawHandles(canvas);
     }
 
     private void drawBitmap(Canvas canvas) {
-        transform.reset();
-        touchManager.applyPositioningAndScale(transform);
+        positioning.reset();
+        touchManager.applyPositioningAndScale(positioning);
+        // The touch manager works with the oriented image, the pixels stay as stored
+        ExifOrientation.getMatrix(bitmapOrientation, bitmap.getWidth(), bitmap.getHeight(), transform);
+        transform.postConcat(positioning);
 
         canvas.drawBitmap(bitmap, transform, bitmapPaint);
     }
@@ -130,23 +196,8 @@ public class CropView extends ImageView {
         touchManager.applyScale(transform, scale);
     }
 
-    private void drawSquareOverlay(Canvas canvas) {
-        final RectF frameRect = touchManager.getFrameRect();
-
-        canvas.drawRect(0, frameRect.top, frameRect.left, frameRect.bottom, viewportPaint); // left
-        canvas.drawRect(0, 0, getWidth(), frameRect.top, viewportPaint); // top
-        canvas.drawRect(frameRect.right, frameRect.top, getWidth(), frameRect.bottom, viewportPaint); // right
-        canvas.drawRect(0, frameRect.bottom, getWidth(), getHeight(), viewportPaint); // bottom
-
-        drawHandles(canvas);
-    }
-
-
     private void drawHandles(Canvas canvas) {
-        Paint paint = new Paint();
-        paint.setStrokeWidth(4);
-        paint.setStyle(Paint.Style.FILL);
-        paint.setColor(Color.parseColor("#00c7f3"));
+        final Paint paint = handlePaint;
         final RectF frameRect = touchManager.getFrameRect();
 
         canvas.drawCircle(frameRect.left, frameRect.bottom / 2, handleCircleRadius, paint); //left
@@ -162,65 +213,6 @@ public class CropView extends ImageView {
         if (listener != null) listener.onChange(frameRect.width(), frameRect.height());
     }
 
-    private void drawOvalOverlay(Canvas canvas) {
-        if (ovalRect == null) {
-            ovalRect = new RectF();
-        }
-        if (ovalPath == null) {
-            ovalPath = new Path();
-        }
-
-        final int viewportWidth = touchManager.getViewportWidth();
-        final int viewportHeight = touchManager.getViewportHeight();
-        final int left = (getWidth() - viewportWidth) / 2;
-        final int top = (getHeight() - viewportHeight) / 2;
-        final int right = getWidth() - left;
-        final int bottom = getHeight() - top;
-        ovalRect.left = left;
-        ovalRect.top = top;
-        ovalRect.right = right;
-        ovalRect.bottom = bottom;
-
-        // top left arc
-        ovalPath.reset();
-        ovalPath.moveTo(left, getHeight() / 2); // middle of the left side of the circle
-        ovalPath.arcTo(ovalRect, 180, 90, false); // draw arc to top
-        ovalPath.lineTo(left, top); // move to top-left corner
-        ovalPath.lineTo(left, getHeight() / 2); // move back to origin
-        ovalPath.close();
-        canvas.drawPath(ovalPath, viewportPaint);
-
-        // top right arc
-        ovalPath.reset();
-        ovalPath.moveTo(getWidth() / 2, top); // middle of the top side of the circle
-        ovalPath.arcTo(ovalRect, 270, 90, false); // draw arc to the right
-        ovalPath.lineTo(right, top); // move to top-right corner
-        ovalPath.lineTo(getWidth() / 2, top); // move back to origin
-        ovalPath.close();
-        canvas.drawPath(ovalPath, viewportPaint);
-
-        // bottom right arc
-        ovalPath.reset();
-        ovalPath.moveTo(right, getHeight() / 2); // middle of the right side of the circle
-        ovalPath.arcTo(ovalRect, 0, 90, false); // draw arc to the bottom
-        ovalPath.lineTo(right, bottom); // move to bottom-right corner
-        ovalPath.lineTo(right, getHeight() / 2); // move back to origin
-        ovalPath.close();
-        canvas.drawPath(ovalPath, viewportPaint);
-
-        // bottom left arc
-        ovalPath.reset();
-        ovalPath.moveTo(getWidth() / 2, bottom); // middle of the bottom side of the circle
-        ovalPath.arcTo(ovalRect, 90, 90, false); // draw arc to the left
-        ovalPath.lineTo(left, bottom); // move to bottom-left corner
-        ovalPath.lineTo(getWidth() / 2, bottom); // move back to origin
-        ovalPath.close();
-        canvas.drawPath(ovalPath, viewportPaint);
-
-        // Draw the square overlay as well
-        drawSquareOverlay(canvas);
-    }
-
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
@@ -233,8 +225,58 @@ public class CropView extends ImageView {
      * @param viewportOverlayColor The color to use for the viewport overlay
      */
     public void setViewportOverlayColor(@ColorInt int viewportOverlayColor) {
-        viewportPaint.setColor(viewportOverlayColor);
+        viewportOverlay.setColor(viewportOverlayColor);
         config.setViewportOverlayColor(viewportOverlayColor);
+        invalidate();
+    }
+
+    /**
+     * Sets the shape of the viewport overlay
+     *
+     * @param shape One of {@link Shape#RECTANGLE} or {@link Shape#OVAL}
+     */
+    public void setShape(@Shape int shape) {
+        this.shape = shape;
+        config.setShape(shape);
+        invalidate();
+    }
+
+    /**
+     * Sets how much memory the displayed bitmap may use, takes effect on the next load. Crops are made from the
+     * original image in full quality when the displayed bitmap is reduced and was loaded from a model.
+     *
+     * @param displayQuality One of {@link DisplayQuality#FULL}, {@link DisplayQuality#LOW_MEMORY} or
+     * {@link DisplayQuality#HARDWARE}
+     */
+    public void setDisplayQuality(@DisplayQuality int displayQuality) {
+        config.setDisplayQuality(displayQuality);
+    }
+
+    @DisplayQuality
+    public int getDisplayQuality() {
+        return config.getDisplayQuality();
+    }
+
+    /**
+     * Sets the color of the frame and its handles
+     *
+     * @param handleColor The color to use for the frame and its handles
+     */
+    public void setHandleColor(@ColorInt int handleColor) {
+        handlePaint.setColor(handleColor);
+        config.setHandleColor(handleColor);
+        invalidate();
+    }
+
+    /**
+     * Sets the stroke width of the frame
+     *
+     * @param handleStrokeWidth The stroke width in pixels
+     */
+    public void setHandleStrokeWidth(float handleStrokeWidth) {
+        config.setHandleStrokeWidth(handleStrokeWidth);
+        handlePaint.setStrokeWidth(config.getHandleStrokeWidth());
+        invalidate();
     }
 
     /**
@@ -254,8 +296,7 @@ public class CropView extends ImageView {
      * @return The native aspect ratio of the image.
      */
     public float getImageRatio() {
-        Bitmap bitmap = getImageBitmap();
-        return bitmap != null ? (float) bitmap.getWidth() / (float) bitmap.getHeight() : 0f;
+        return bitmap != null ? (float) getOrientedBitmapWidth() / (float) getOrientedBitmapHeight() : 0f;
     }
 
     /**
@@ -305,12 +346,16 @@ public class CropView extends ImageView {
         invalidate();
     }
 
+    /**
+     * Loads the resource asynchronously, subsampled to the viewport size, using {@link BuiltInBitmapLoader}.
+     */
     @Override
     public void setImageResource(@DrawableRes int resId) {
-        final Bitmap bitmap = resId > 0
-                ? BitmapFactory.decodeResource(getResources(), resId)
-                : null;
-        setImageBitmap(bitmap);
+        if (resId == 0) {
+            setImageBitmap(null);
+            return;
+        }
+        extensions().using(Extensions.LoaderType.BUILT_IN).load(resId);
     }
 
     @Override
@@ -335,17 +380,173 @@ public class CropView extends ImageView {
 
     @Override
     public void setImageBitmap(@Nullable Bitmap bitmap) {
+        setImageBitmap(bitmap, ExifInterface.ORIENTATION_NORMAL);
+    }
+
+    /**
+     * Sets the bitmap along with the EXIF orientation to display it with, e.g. as read from the file it was decoded
+     * from. The orientation is applied when drawing and cropping, pixels are never rotated.
+     *
+     * @param orientation One of the {@link ExifInterface} <code>ORIENTATION_*</code> values
+     * @see #getImageOrientation()
+     */
+    public void setImageBitmap(@Nullable Bitmap bitmap, int orientation) {
+        orientation = ExifOrientation.normalize(orientation);
+        final Bitmap preview = previewing ? this.bitmap : null;
+        final int previewWidth = getOrientedBitmapWidth();
+        final int previewHeight = getOrientedBitmapHeight();
+        previewing = false;
+        final boolean loaded = bitmap != null && awaitingLoad;
+        setSourceModel(loaded ? loadingModel : null);
+        bitmapRetainable = !loaded || !loadingRecyclesBitmap;
+        if (loaded && loadingCacheKey != null) {
+            FillViewportCache.get(getContext()).put(loadingCacheKey, bitmap, orientation);
+        }
+        if (bitmap != null) {
+            awaitingLoad = false;
+            if (preview != null && PreviewDecoder.haveSameAspect(
+                    ExifOrientation.getOrientedWidth(orientation, bitmap.getWidth(), bitmap.getHeight()),
+                    ExifOrientation.getOrientedHeight(orientation, bitmap.getWidth(), bitmap.getHeight()),
+                    previewWidth, previewHeight)) {
+                // Refined image for the preview on screen, keep whatever the user did in the meantime. Loaders
+                // rotating pixels themselves deliver it in another orientation, it is displayed the same.
+                bitmapOrientation = orientation;
+                changeImageBitmap(bitmap);
+                return;
+            }
+        }
         this.bitmap = bitmap;
+        this.bitmapOrientation = orientation;
         resetTouchManager();
         invalidate();
     }
 
+    /**
+     * @return EXIF orientation the current bitmap is displayed with, {@link ExifInterface#ORIENTATION_NORMAL} unless
+     * set through {@link #setImageBitmap(Bitmap, int)} or loaded by {@link BuiltInBitmapLoader}.
+     */
+    public int getImageOrientation() {
+        return bitmapOrientation;
+    }
+
     public void changeImageBitmap(Bitmap bitmap) {
         this.bitmap = bitmap;
         changeTouchManager();
         invalidate();
     }
 
+    /**
+     * Draws tiles decoded from the image the current bitmap was loaded from when zoomed in past the bitmap
+     * resolution, so that zooming shows the actual detail of the source. Only applies to bitmaps loaded through
+     * {@link Extensions#load(Object)} or a {@link LoadRequest}.
+     *
+     * @see #isTiledRenderingEnabled()
+     */
+    public void setTiledRenderingEnabled(boolean enabled) {
+        tiledRenderingEnabled = enabled;
+        updateTileRenderer();
+    }
+
+    public boolean isTiledRenderingEnabled() {
+        return tiledRenderingEnabled;
+    }
+
+    /**
+     * @return Model the current bitmap was loaded from, if any.
+     */
+    @Nullable
+    Object getSourceModel() {
+        return sourceModel;
+    }
+
+    /**
+     * @return <code>true</code> if the current bitmap is not fit for full quality crops, see {@link DisplayQuality}.
+     */
+    boolean isDisplayBitmapReduced() {
+        return bitmap != null && bitmap.getConfig() != Bitmap.Config.ARGB_8888;
+    }
+
+    private void setSourceModel(@Nullable Object model) {
+        sourceModel = model;
+        updateTileRenderer();
+    }
+
+    private void updateTileRenderer() {
+        final boolean wanted = tiledRenderingEnabled && sourceModel != null && getWindowToken() != null;
+        if (tileRenderer != null && (!wanted || tileRenderer.getModel() != sourceModel)) {
+            tileRenderer.release();
+            tileRenderer = null;
+        }
+        if (wanted && tileRenderer == null) {
+            tileRenderer = new TileRenderer(getContext(), sourceModel, tileInvalidator);
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateTileRenderer();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // Tiles are only kept while visible
+        if (tileRenderer != null) {
+            tileRenderer.release();
+            tileRenderer = null;
+        }
+        if (!isChangingConfigurations()) {
+            // No recreated view will restore the saved state, nothing would take the bitmap back
+            RetainedBitmaps.release(retainedBitmapId);
+            retainedBitmapId = 0;
+        }
+    }
+
+    private boolean isChangingConfigurations() {
+        Context context = getContext();
+        while (context instanceof ContextWrapper) {
+            if (context instanceof Activity) {
+                return ((Activity) context).isChangingConfigurations();
+            }
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return false;
+    }
+
+    /**
+     * Starts a new load, previews of earlier loads are ignored from now on.
+     *
+     * @param cacheKey Key to store the loaded bitmap under in {@link FillViewportCache}, if any
+     * @param recyclesBitmap Whether the loader takes the bitmap back once it is not displayed anymore, see
+     * {@link RecyclingBitmapLoader}
+     * @return Generation to pass to {@link #setPreviewBitmap(int, Bitmap, int)}.
+     */
+    int beginLoad(@Nullable Object model, @Nullable FillViewportCache.Key cacheKey, boolean recyclesBitmap) {
+        loadingModel = model;
+        loadingCacheKey = cacheKey;
+        loadingRecyclesBitmap = recyclesBitmap;
+        awaitingLoad = true;
+        return ++loadGeneration;
+    }
+
+    /**
+     * Shows <code>preview</code> until the loader of the given generation delivers, unless it already has.
+     *
+     * @return <code>true</code> if the preview is now displayed.
+     */
+    boolean setPreviewBitmap(int generation, Bitmap preview, int orientation) {
+        if (generation != loadGeneration || !awaitingLoad) {
+            return false;
+        }
+        this.bitmap = preview;
+        this.bitmapOrientation = orientation;
+        resetTouchManager();
+        invalidate();
+        previewing = true;
+        return true;
+    }
+
     /**
      * @return Current working Bitmap or <code>null</code> if none has been set yet.
      */
@@ -354,18 +555,90 @@ public class CropView extends ImageView {
         return bitmap;
     }
 
+    private int getOrientedBitmapWidth() {
+        return bitmap == null ? 0
+                : ExifOrientation.getOrientedWidth(bitmapOrientation, bitmap.getWidth(), bitmap.getHeight());
+    }
+
+    private int getOrientedBitmapHeight() {
+        return bitmap == null ? 0
+                : ExifOrientation.getOrientedHeight(bitmapOrientation, bitmap.getWidth(), bitmap.getHeight());
+    }
+
     private void resetTouchManager() {
-        final boolean invalidBitmap = bitmap == null;
-        final int bitmapWidth = invalidBitmap ? 0 : bitmap.getWidth();
-        final int bitmapHeight = invalidBitmap ? 0 : bitmap.getHeight();
-        touchManager.resetFor(bitmapWidth, bitmapHeight, getWidth(), getHeight());
+        touchManager.resetFor(getOrientedBitmapWidth(), getOrientedBitmapHeight(), getWidth(), getHeight());
+        applyPendingRestore();
+    }
+
+    private void applyPendingRestore() {
+        if (pendingRestore != null && bitmap != null && getWidth() > 0 && getHeight() > 0) {
+            pendingRestore.applyTo(touchManager);
+            pendingRestore = null;
+        }
+    }
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        final SavedState state = new SavedState(super.onSaveInstanceState());
+        state.viewportRatio = touchManager.getAspectRatio();
+        if (pendingRestore != null) {
+            // Not applied yet, keep it as is
+            state.frameWidthRatio = pendingRestore.frameWidthRatio;
+            state.frameHeightRatio = pendingRestore.frameHeightRatio;
+            state.normalizedCropRect.set(pendingRestore.normalizedCropRect);
+        } else if (bitmap != null) {
+            state.frameWidthRatio = touchManager.getFrameWidthRatio();
+            state.frameHeightRatio = touchManager.getFrameHeightRatio();
+            touchManager.snapshot(bitmap, bitmapOrientation).getNormalizedCropRect(state.normalizedCropRect);
+        }
+        state.sourceModel = SavedState.isSupportedModel(sourceModel) ? sourceModel : null;
+
+        RetainedBitmaps.release(retainedBitmapId);
+        retainedBitmapId = 0;
+        // Only a view recreated for the new configuration takes the bitmap back, any other save would pin it
+        if (bitmap != null && !previewing && bitmapRetainable && isChangingConfigurations()) {
+            // Registers the trim callbacks dropping retained bitmaps once in the background
+            FillViewportCache.get(getContext());
+            retainedBitmapId = RetainedBitmaps.retain(bitmap);
+        }
+        state.retainedBitmapId = retainedBitmapId;
+        state.bitmapOrientation = bitmapOrientation;
+        return state;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        final SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+
+        touchManager.setAspectRatio(savedState.viewportRatio);
+        pendingRestore = savedState.normalizedCropRect.isEmpty() ? null
+                : new PendingRestore(savedState.frameWidthRatio, savedState.frameHeightRatio,
+                        savedState.normalizedCropRect);
+
+        final Bitmap retained = RetainedBitmaps.release(savedState.retainedBitmapId);
+        if (retained != null && (bitmap == null || previewing)) {
+            this.bitmap = retained;
+            this.bitmapOrientation = savedState.bitmapOrientation;
+            if (awaitingLoad) {
+                // Already reloading the same image, refine the retained bitmap instead of starting over
+                previewing = true;
+            } else {
+                setSourceModel(savedState.sourceModel);
+            }
+        } else if (retained == null && bitmap == null && !awaitingLoad && savedState.sourceModel != null) {
+            extensions().load(savedState.sourceModel);
+        }
+        resetTouchManager();
+        invalidate();
     }
 
     private void changeTouchManager() {
-        final boolean invalidBitmap = bitmap == null;
-        final int bitmapWidth = invalidBitmap ? 0 : bitmap.getWidth();
-        final int bitmapHeight = invalidBitmap ? 0 : bitmap.getHeight();
-        touchManager.changeFor(bitmapWidth, bitmapHeight, getWidth(), getHeight());
+        touchManager.changeFor(getOrientedBitmapWidth(), getOrientedBitmapHeight(), getWidth(), getHeight());
     }
 
     @Override
@@ -376,11 +649,31 @@ public class CropView extends ImageView {
             return result;
         }
 
-        touchManager.onEvent(event);
-        invalidate();
+        if (touchManager.onEvent(event, touchDirtyRect)) {
+            // Handles are centered on the frame edges
+            final int handleExtent = (int) Math.ceil(handleCircleRadius + handlePaint.getStrokeWidth()) + 1;
+            touchDirtyRect.inset(-handleExtent, -handleExtent);
+            scheduleRedraw(touchDirtyRect);
+        }
         return true;
     }
 
+    /**
+     * Coalesces redraws to at most one per frame, only invalidating the union of the areas affected since the last one.
+     */
+    private void scheduleRedraw(Rect dirty) {
+        pendingDirtyRect.union(dirty);
+        if (redrawPending) {
+            return;
+        }
+        redrawPending = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            postOnAnimation(redrawRunnable);
+        } else {
+            post(redrawRunnable);
+        }
+    }
+
     /**
      * Performs synchronous image cropping based on configuration.
      *
@@ -389,27 +682,104 @@ public class CropView extends ImageView {
      */
     @Nullable
     public Bitmap crop() {
+        final CropState state = snapshotState();
+        return state == null ? null : state.render();
+    }
+
+    /**
+     * Performs synchronous image cropping straight into a {@link Bitmap} of the given size, in a single pass. Large
+     * reductions are downsampled in steps rather than filtered once, so the result is sharper than scaling
+     * {@link #crop()}.
+     *
+     * @param width Width of the cropped {@link Bitmap}, should keep the viewport ratio along with <code>height</code>
+     * @return A {@link Bitmap} cropped based on viewport and user panning and zooming or <code>null</code> if no
+     * {@link Bitmap} has been provided.
+     */
+    @Nullable
+    public Bitmap crop(int width, int height) {
+        Utils.checkArg(width > 0 && height > 0, "width and height must be positive");
+        final CropState state = snapshotState();
+        return state == null ? null : state.render(width, height, true);
+    }
+
+    /**
+     * Captures what is currently displayed inside the viewport, see {@link CropState}.
+     *
+     * @return The current state or <code>null</code> if no {@link Bitmap} has been provided.
+     */
+    @Nullable
+    CropState snapshotState() {
         if (bitmap == null) {
             return null;
         }
+        return touchManager.snapshot(bitmap, bitmapOrientation);
+    }
 
-        final Bitmap src = bitmap;
-        final Bitmap.Config srcConfig = src.getConfig();
-        final Bitmap.Config config = srcConfig == null ? Bitmap.Config.ARGB_8888 : srcConfig;
-        final int viewportHeight = touchManager.getViewportHeight();
-        final int viewportWidth = touchManager.getViewportWidth();
-
-        final Bitmap dst = Bitmap.createBitmap(viewportWidth, viewportHeight, config);
-
-        Canvas canvas = new Canvas(dst);
+    /**
+     * Captures the current crop, e.g. to apply it again at full resolution with a {@link CropEngine} once this view is
+     * gone. Only keep its {@link CropState#getNormalizedCropRect(RectF)} around for that, the state itself references
+     * the displayed {@link Bitmap}.
+     *
+     * @return The current state or <code>null</code> if no {@link Bitmap} has been provided.
+     */
+    @Nullable
+    public CropState getCropState() {
+        return snapshotState();
+    }
 
-        final float left = touchManager.getFrameRect().left;
-        final float top = touchManager.getFrameRect().top;
-        canvas.translate(-left, -top);
+    /**
+     * Records the current crop, to be uploaded along with the original image or rendered later by a
+     * {@link CropEngine}. Unlike {@link #getCropState()} it holds no reference to the displayed {@link Bitmap}.
+     *
+     * @return A descriptor of the area inside the viewport, rendered at the full resolution of the image, or
+     * <code>null</code> if no {@link Bitmap} has been provided.
+     * @see CropDescriptor#withOutputSize(int, int)
+     */
+    @Nullable
+    public CropDescriptor getCropDescriptor() {
+        final RectF normalizedCropRect = new RectF();
+        if (pendingRestore != null) {
+            // Not applied yet, keep it as is
+            normalizedCropRect.set(pendingRestore.normalizedCropRect);
+        } else if (bitmap != null) {
+            touchManager.snapshot(bitmap, bitmapOrientation).getNormalizedCropRect(normalizedCropRect);
+        }
+        return normalizedCropRect.isEmpty() ? null : new CropDescriptor(normalizedCropRect);
+    }
 
-        drawBitmap(canvas);
+    /**
+     * Positions and scales the image so that the viewport shows the crop of <code>descriptor</code>, as closely as the
+     * viewport ratio and scale limits allow. The frame keeps its size and nothing is rendered, the crop is applied
+     * right away if an image is displayed or once one is set otherwise.
+     */
+    public void applyDescriptor(@NonNull CropDescriptor descriptor) {
+        Utils.checkNotNull(descriptor, "descriptor == null");
+        float frameWidthRatio = 1f;
+        float frameHeightRatio = 1f;
+        if (pendingRestore != null) {
+            frameWidthRatio = pendingRestore.frameWidthRatio;
+            frameHeightRatio = pendingRestore.frameHeightRatio;
+        } else if (bitmap != null) {
+            frameWidthRatio = touchManager.getFrameWidthRatio();
+            frameHeightRatio = touchManager.getFrameHeightRatio();
+        }
+        final RectF normalizedCropRect = new RectF();
+        descriptor.getNormalizedCropRect(normalizedCropRect);
+        pendingRestore = new PendingRestore(frameWidthRatio, frameHeightRatio, normalizedCropRect);
+        applyPendingRestore();
+        invalidate();
+    }
 
-        return dst;
+    /**
+     * Keeps track of the latest crop request, any previous one still pending is cancelled since its output would be
+     * stale.
+     */
+    <V> Future<V> trackCrop(Future<V> crop) {
+        if (pendingCrop != null) {
+            pendingCrop.cancel(true);
+        }
+        pendingCrop = crop;
+        return crop;
     }
 
     /**
@@ -493,6 +863,10 @@ public class CropView extends ImageView {
             PICASSO,
             GLIDE,
             UIL,
+            /**
+             * {@link BuiltInBitmapLoader}, also used by {@link #CLASS_LOOKUP} when no image library is available
+             */
+            BUILT_IN,
             CLASS_LOOKUP
         }
 
@@ -509,6 +883,16 @@ public class CropView extends ImageView {
             return new LoadRequest(cropView).using(loaderType);
         }
 
+        /**
+         * Load a {@link Bitmap} showing a low resolution preview first, you must call {@link LoadRequest#load(Object)}
+         * afterwards.
+         *
+         * @see LoadRequest#preview()
+         */
+        public LoadRequest preview() {
+            return new LoadRequest(cropView).preview();
+        }
+
         /**
          * Perform an asynchronous crop request.
          *
@@ -517,6 +901,7 @@ public class CropView extends ImageView {
          * <li>{@link CropRequest#into(File)}</li>
          * <li>{@link CropRequest#into(OutputStream, boolean)}</li>
          * </ul>
+         * @see CropRequest#fromSource(Object)
          */
         public CropRequest crop() {
             return new CropRequest(cropView);
@@ -541,4 +926,85 @@ public class CropView extends ImageView {
         void onChange(float width, float height);
     }
 
+    /**
+     * Crop waiting for an image and a laid out view, restored from a {@link SavedState} or applied from a
+     * {@link CropDescriptor}.
+     */
+    static class PendingRestore {
+
+        final RectF normalizedCropRect = new RectF();
+        final float frameWidthRatio;
+        final float frameHeightRatio;
+
+        PendingRestore(float frameWidthRatio, float frameHeightRatio, RectF normalizedCropRect) {
+            this.frameWidthRatio = frameWidthRatio;
+            this.frameHeightRatio = frameHeightRatio;
+            this.normalizedCropRect.set(normalizedCropRect);
+        }
+
+        void applyTo(TouchManager touchManager) {
+            touchManager.restore(frameWidthRatio, frameHeightRatio, normalizedCropRect);
+        }
+    }
+
+    /**
+     * Crop state of a {@link CropView}, relative to the bitmap and view sizes so that it can be restored on another
+     * size. The bitmap itself is kept by {@link RetainedBitmaps} and its model reloaded if it is gone.
+     */
+    static class SavedState extends BaseSavedState {
+
+        final RectF normalizedCropRect = new RectF();
+        float frameWidthRatio = 1f;
+        float frameHeightRatio = 1f;
+        float viewportRatio;
+        long retainedBitmapId;
+        int bitmapOrientation = ExifInterface.ORIENTATION_NORMAL;
+        Object sourceModel;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        SavedState(Parcel in) {
+            super(in);
+            normalizedCropRect.set(in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat());
+            frameWidthRatio = in.readFloat();
+            frameHeightRatio = in.readFloat();
+            viewportRatio = in.readFloat();
+            retainedBitmapId = in.readLong();
+            bitmapOrientation = in.readInt();
+            sourceModel = in.readValue(SavedState.class.getClassLoader());
+        }
+
+        static boolean isSupportedModel(Object model) {
+            return model instanceof Uri || model instanceof File || model instanceof String || model instanceof Integer;
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeFloat(normalizedCropRect.left);
+            out.writeFloat(normalizedCropRect.top);
+            out.writeFloat(normalizedCropRect.right);
+            out.writeFloat(normalizedCropRect.bottom);
+            out.writeFloat(frameWidthRatio);
+            out.writeFloat(frameHeightRatio);
+            out.writeFloat(viewportRatio);
+            out.writeLong(retainedBitmapId);
+            out.writeInt(bitmapOrientation);
+            out.writeValue(sourceModel);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
 }
@@ -17,6 +17,8 @@ package com.lyft.android.scissors2;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.os.Build;
 import android.util.AttributeSet;
 
 class CropViewConfig {
@@ -25,9 +27,14 @@ class CropViewConfig {
     public static final float DEFAULT_MAXIMUM_SCALE = 10f;
     public static final float DEFAULT_MINIMUM_SCALE = 0f;
     public static final int DEFAULT_IMAGE_QUALITY = 100;
+    public static final int DEFAULT_MINIMUM_IMAGE_QUALITY = 30;
+    public static final int DEFAULT_TILE_HEIGHT = 256;
     public static final int DEFAULT_VIEWPORT_OVERLAY_PADDING = 0;
     public static final int DEFAULT_VIEWPORT_OVERLAY_COLOR = 0xC8000000; // Black with 200 alpha
     public static final int DEFAULT_SHAPE = CropView.Shape.RECTANGLE;
+    public static final int DEFAULT_HANDLE_COLOR = 0xFF00C7F3;
+    public static final float DEFAULT_HANDLE_STROKE_WIDTH = 4f;
+    public static final int DEFAULT_DISPLAY_QUALITY = CropView.DisplayQuality.FULL;
 
     private float viewportRatio = DEFAULT_VIEWPORT_RATIO;
     private float maxScale = DEFAULT_MAXIMUM_SCALE;
@@ -35,6 +42,9 @@ class CropViewConfig {
     private int viewportOverlayPadding = DEFAULT_VIEWPORT_OVERLAY_PADDING;
     private int viewportOverlayColor = DEFAULT_VIEWPORT_OVERLAY_COLOR;
     private @CropView.Shape int shape = DEFAULT_SHAPE;
+    private int handleColor = DEFAULT_HANDLE_COLOR;
+    private float handleStrokeWidth = DEFAULT_HANDLE_STROKE_WIDTH;
+    private @CropView.DisplayQuality int displayQuality = DEFAULT_DISPLAY_QUALITY;
 
     public int getViewportOverlayColor() {
         return viewportOverlayColor;
@@ -84,6 +94,44 @@ class CropViewConfig {
         this.shape = shape;
     }
 
+    public int getHandleColor() {
+        return handleColor;
+    }
+
+    void setHandleColor(int handleColor) {
+        this.handleColor = handleColor;
+    }
+
+    public float getHandleStrokeWidth() {
+        return handleStrokeWidth;
+    }
+
+    void setHandleStrokeWidth(float handleStrokeWidth) {
+        this.handleStrokeWidth = handleStrokeWidth < 0 ? DEFAULT_HANDLE_STROKE_WIDTH : handleStrokeWidth;
+    }
+
+    public @CropView.DisplayQuality int getDisplayQuality() {
+        return displayQuality;
+    }
+
+    void setDisplayQuality(@CropView.DisplayQuality int displayQuality) {
+        this.displayQuality = displayQuality;
+    }
+
+    /**
+     * @param opaque Whether the image is known to have no alpha channel, e.g. a JPEG
+     * @return Config to display a bitmap of the given display quality with.
+     */
+    static Bitmap.Config getDisplayConfig(@CropView.DisplayQuality int displayQuality, boolean opaque) {
+        if (displayQuality == CropView.DisplayQuality.LOW_MEMORY && opaque) {
+            return Bitmap.Config.RGB_565;
+        }
+        if (displayQuality == CropView.DisplayQuality.HARDWARE && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return Bitmap.Config.HARDWARE;
+        }
+        return Bitmap.Config.ARGB_8888;
+    }
+
     public static CropViewConfig from(Context context, AttributeSet attrs) {
         final CropViewConfig cropViewConfig = new CropViewConfig();
 
@@ -115,10 +163,22 @@ class CropViewConfig {
             attributes.getDimensionPixelSize(R.styleable.CropView_cropviewViewportOverlayPadding,
                 CropViewConfig.DEFAULT_VIEWPORT_OVERLAY_PADDING));
 
+        cropViewConfig.setHandleColor(
+            attributes.getColor(R.styleable.CropView_cropviewHandleColor,
+                CropViewConfig.DEFAULT_HANDLE_COLOR));
+
+        cropViewConfig.setHandleStrokeWidth(
+            attributes.getDimension(R.styleable.CropView_cropviewHandleStrokeWidth,
+                CropViewConfig.DEFAULT_HANDLE_STROKE_WIDTH));
+
         @CropView.Shape int shape = attributes.getInt(
                 R.styleable.CropView_cropviewShape, CropViewConfig.DEFAULT_SHAPE);
         cropViewConfig.setShape(shape);
 
+        @CropView.DisplayQuality int displayQuality = attributes.getInt(
+                R.styleable.CropView_cropviewDisplayQuality, CropViewConfig.DEFAULT_DISPLAY_QUALITY);
+        cropViewConfig.setDisplayQuality(displayQuality);
+
         attributes.recycle();
 
         return cropViewConfig;
@@ -57,6 +57,8 @@ class CropViewExtensions {
                 return GlideBitmapLoader.createUsing(cropView);
             case UIL:
                 return UILBitmapLoader.createUsing(cropView);
+            case BUILT_IN:
+                return BuiltInBitmapLoader.createUsing(cropView);
             case CLASS_LOOKUP:
                 break;
             default:
@@ -72,7 +74,7 @@ class CropViewExtensions {
         if (HAS_UIL) {
             return UILBitmapLoader.createUsing(cropView);
         }
-        throw new IllegalStateException("You must provide a BitmapLoader.");
+        return BuiltInBitmapLoader.createUsing(cropView);
     }
 
     static boolean canHasClass(String className) {
@@ -100,4 +102,38 @@ class CropViewExtensions {
         final int recommendedHeight = (int) ((sourceHeight * scale) + 0.5f);
         return new Rect(0, 0, recommendedWidth, recommendedHeight);
     }
+
+    /**
+     * @return Largest size with the aspect ratio of <code>width</code> by <code>height</code> fitting in
+     * <code>maxWidth</code> by <code>maxHeight</code>, never scaled up.
+     */
+    static Rect computeOutputSize(int width, int height, int maxWidth, int maxHeight) {
+        if (width <= maxWidth && height <= maxHeight) {
+            return new Rect(0, 0, width, height);
+        }
+        final float scale = Math.min((float) maxWidth / width, (float) maxHeight / height);
+        return new Rect(0, 0, Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale)));
+    }
+
+    /**
+     * @return <code>true</code> if a bitmap of the given size, decoded by an image library asked for
+     * <code>target</code>, needs no further scaling. Decoders may round either dimension differently.
+     */
+    static boolean isTargetSize(int width, int height, Rect target) {
+        return Math.abs(width - target.width()) <= 1 && Math.abs(height - target.height()) <= 1;
+    }
+
+    /**
+     * @return The largest power of two sample size which keeps the decoded image at least as big as the target.
+     */
+    static int computeSampleSize(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return sampleSize;
+        }
+        while (sourceWidth / (sampleSize * 2) >= targetWidth && sourceHeight / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
 }
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import java.io.OutputStream;
+
+/**
+ * Renders and encodes a crop into a stream, always invoked off the main thread.
+ *
+ * @see Utils#flushToFile(CropWriter, java.io.File)
+ * @see Utils#flushToStream(CropWriter, OutputStream, boolean)
+ */
+interface CropWriter {
+
+    /**
+     * @return The dimensions of the encoded image, output details are filled in by the caller.
+     */
+    CropResult writeTo(OutputStream outputStream) throws Exception;
+}
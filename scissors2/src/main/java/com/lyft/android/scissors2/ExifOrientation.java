@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.content.Context;
+import android.graphics.Matrix;
+import android.graphics.RectF;
+import android.media.ExifInterface;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the EXIF orientation of JPEG images from their header only and maps between the stored pixels and the image
+ * as it should be displayed, so that orientation is applied through matrices rather than by rotating pixels.
+ * <p>
+ * Orientations are the {@link ExifInterface} <code>ORIENTATION_*</code> values, anything else is treated as
+ * {@link ExifInterface#ORIENTATION_NORMAL}.
+ */
+class ExifOrientation {
+
+    private static final int MARKER_PREFIX = 0xFF;
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TYPE_SHORT = 3;
+    private static final int IFD_ENTRY_SIZE = 12;
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+
+    private ExifOrientation() {
+    }
+
+    /**
+     * @return Orientation of <code>model</code>, {@link ExifInterface#ORIENTATION_NORMAL} if it has none or can't be
+     * read.
+     */
+    static int read(Context context, Object model) {
+        InputStream inputStream = null;
+        try {
+            inputStream = Utils.openInputStream(context, model);
+            return parse(inputStream);
+        } catch (IOException | RuntimeException e) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        } finally {
+            Utils.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Reads segment headers up to the EXIF one, stopping at the image data at the latest.
+     */
+    static int parse(InputStream inputStream) throws IOException {
+        if (readByte(inputStream) != MARKER_PREFIX || readByte(inputStream) != MARKER_SOI) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+        while (true) {
+            if (readByte(inputStream) != MARKER_PREFIX) {
+                return ExifInterface.ORIENTATION_NORMAL;
+            }
+            int marker = readByte(inputStream);
+            while (marker == MARKER_PREFIX) {
+                // Fill bytes
+                marker = readByte(inputStream);
+            }
+            if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                return ExifInterface.ORIENTATION_NORMAL;
+            }
+            final int length = (readByte(inputStream) << 8 | readByte(inputStream)) - 2;
+            if (length < 0) {
+                return ExifInterface.ORIENTATION_NORMAL;
+            }
+            if (marker != MARKER_APP1) {
+                skipFully(inputStream, length);
+                continue;
+            }
+            final byte[] segment = new byte[length];
+            readFully(inputStream, segment);
+            if (startsWith(segment, EXIF_HEADER)) {
+                return parseTiff(segment, EXIF_HEADER.length);
+            }
+            // Another APP1 payload, e.g. XMP
+        }
+    }
+
+    private static int parseTiff(byte[] data, int start) {
+        if (data.length < start + 8) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+        final boolean littleEndian;
+        if (data[start] == 'I' && data[start + 1] == 'I') {
+            littleEndian = true;
+        } else if (data[start] == 'M' && data[start + 1] == 'M') {
+            littleEndian = false;
+        } else {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+        if (readShort(data, start + 2, littleEndian) != 42) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+        final long ifdOffset = readInt(data, start + 4, littleEndian) & 0xFFFFFFFFL;
+        if (ifdOffset > data.length - start - 2) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+        final int ifd = start + (int) ifdOffset;
+        final int entryCount = readShort(data, ifd, littleEndian);
+        for (int i = 0; i < entryCount; i++) {
+            final int entry = ifd + 2 + i * IFD_ENTRY_SIZE;
+            if (entry + IFD_ENTRY_SIZE > data.length) {
+                break;
+            }
+            if (readShort(data, entry, littleEndian) == TAG_ORIENTATION) {
+                if (readShort(data, entry + 2, littleEndian) != TYPE_SHORT) {
+                    break;
+                }
+                return normalize(readShort(data, entry + 8, littleEndian));
+            }
+        }
+        return ExifInterface.ORIENTATION_NORMAL;
+    }
+
+    static int normalize(int orientation) {
+        return orientation >= ExifInterface.ORIENTATION_NORMAL && orientation <= ExifInterface.ORIENTATION_ROTATE_270
+                ? orientation : ExifInterface.ORIENTATION_NORMAL;
+    }
+
+    /**
+     * @return <code>true</code> if the displayed image is as wide as the stored pixels are high, and the other way
+     * around.
+     */
+    static boolean isTransposed(int orientation) {
+        return orientation == ExifInterface.ORIENTATION_TRANSPOSE
+                || orientation == ExifInterface.ORIENTATION_ROTATE_90
+                || orientation == ExifInterface.ORIENTATION_TRANSVERSE
+                || orientation == ExifInterface.ORIENTATION_ROTATE_270;
+    }
+
+    static int getOrientedWidth(int orientation, int width, int height) {
+        return isTransposed(orientation) ? height : width;
+    }
+
+    static int getOrientedHeight(int orientation, int width, int height) {
+        return isTransposed(orientation) ? width : height;
+    }
+
+    /**
+     * Sets <code>out</code> to map the stored pixels of a <code>width</code> by <code>height</code> image onto the
+     * image as displayed, with its top left corner at the origin.
+     */
+    static void getMatrix(int orientation, float width, float height, Matrix out) {
+        out.reset();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                out.setScale(-1, 1);
+                out.postTranslate(width, 0);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                out.setScale(-1, -1);
+                out.postTranslate(width, height);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                out.setScale(1, -1);
+                out.postTranslate(0, height);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                out.setRotate(90);
+                out.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                out.setRotate(90);
+                out.postTranslate(height, 0);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                out.setRotate(-90);
+                out.postScale(-1, 1);
+                out.postTranslate(height, width);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                out.setRotate(-90);
+                out.postTranslate(0, width);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Maps a rect normalized over the displayed image to the same area normalized over the stored pixels.
+     */
+    static void toStored(int orientation, RectF normalizedRect, RectF out) {
+        final float left = normalizedRect.left;
+        final float top = normalizedRect.top;
+        final float right = normalizedRect.right;
+        final float bottom = normalizedRect.bottom;
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                out.set(1 - right, top, 1 - left, bottom);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                out.set(1 - right, 1 - bottom, 1 - left, 1 - top);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                out.set(left, 1 - bottom, right, 1 - top);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                out.set(top, left, bottom, right);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                out.set(top, 1 - right, bottom, 1 - left);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                out.set(1 - bottom, 1 - right, 1 - top, 1 - left);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                out.set(1 - bottom, left, 1 - top, right);
+                break;
+            default:
+                out.set(left, top, right, bottom);
+                break;
+        }
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        if (data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readShort(byte[] data, int offset, boolean littleEndian) {
+        if (offset < 0 || offset + 2 > data.length) {
+            return -1;
+        }
+        final int b0 = data[offset] & 0xFF;
+        final int b1 = data[offset + 1] & 0xFF;
+        return littleEndian ? b1 << 8 | b0 : b0 << 8 | b1;
+    }
+
+    private static int readInt(byte[] data, int offset, boolean littleEndian) {
+        final int high = readShort(data, offset + (littleEndian ? 2 : 0), littleEndian);
+        final int low = readShort(data, offset + (littleEndian ? 0 : 2), littleEndian);
+        return high << 16 | low;
+    }
+
+    private static int readByte(InputStream inputStream) throws IOException {
+        final int value = inputStream.read();
+        if (value < 0) {
+            throw new EOFException();
+        }
+        return value;
+    }
+
+    private static void readFully(InputStream inputStream, byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            final int read = inputStream.read(buffer, offset, buffer.length - offset);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            offset += read;
+        }
+    }
+
+    private static void skipFully(InputStream inputStream, long count) throws IOException {
+        while (count > 0) {
+            final long skipped = inputStream.skip(count);
+            if (skipped > 0) {
+                count -= skipped;
+            } else {
+                // Some streams can't skip, read instead
+                readByte(inputStream);
+                count--;
+            }
+        }
+    }
+}
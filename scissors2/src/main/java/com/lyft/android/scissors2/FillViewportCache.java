@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.media.ExifInterface;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+/**
+ * Bitmaps loaded to fill a viewport, shared by every {@link CropView} so that opening the same image again, e.g.
+ * after a configuration change, doesn't decode it again. Bounded to {@value #HEAP_FRACTION_DENOMINATOR}th of the heap
+ * and trimmed when the system runs low on memory, along with the {@link BitmapReusePool} and {@link RetainedBitmaps}.
+ * <p>
+ * Evicted bitmaps are not recycled, they may still be displayed. Only accessed from the main thread.
+ *
+ * @see LoadRequest#cacheInMemory()
+ */
+class FillViewportCache implements ComponentCallbacks2 {
+
+    private static final int HEAP_FRACTION_DENOMINATOR = 8;
+
+    private static FillViewportCache instance;
+
+    private final LruCache<Key, Entry> bitmaps;
+
+    FillViewportCache(int maxBytes) {
+        bitmaps = new LruCache<Key, Entry>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Entry entry) {
+                return entry.bitmap.getByteCount();
+            }
+        };
+    }
+
+    static FillViewportCache get(Context context) {
+        if (instance == null) {
+            instance = new FillViewportCache(
+                    (int) Math.min(Runtime.getRuntime().maxMemory() / HEAP_FRACTION_DENOMINATOR, Integer.MAX_VALUE));
+            context.getApplicationContext().registerComponentCallbacks(instance);
+        }
+        return instance;
+    }
+
+    static Key createKey(Object model, int viewportWidth, int viewportHeight, Bitmap.Config config) {
+        return new Key(model, viewportWidth, viewportHeight, config);
+    }
+
+    @Nullable
+    Bitmap get(Key key) {
+        final Entry entry = bitmaps.get(key);
+        if (entry != null && entry.bitmap.isRecycled()) {
+            bitmaps.remove(key);
+            return null;
+        }
+        return entry != null ? entry.bitmap : null;
+    }
+
+    /**
+     * @return EXIF orientation the bitmap cached under <code>key</code> is displayed with.
+     */
+    int getOrientation(Key key) {
+        final Entry entry = bitmaps.get(key);
+        return entry != null ? entry.orientation : ExifInterface.ORIENTATION_NORMAL;
+    }
+
+    void put(Key key, Bitmap bitmap) {
+        put(key, bitmap, ExifInterface.ORIENTATION_NORMAL);
+    }
+
+    void put(Key key, Bitmap bitmap, int orientation) {
+        if (!bitmap.isRecycled()) {
+            bitmaps.put(key, new Entry(bitmap, orientation));
+        }
+    }
+
+    int size() {
+        return bitmaps.size();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            bitmaps.evictAll();
+            BitmapReusePool.get().clear();
+            RetainedBitmaps.clear();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            // Either the app went to the background or it is running low, half is enough to come back quickly
+            bitmaps.trimToSize(bitmaps.maxSize() / 2);
+            BitmapReusePool.get().clear();
+            if (level >= TRIM_MEMORY_BACKGROUND) {
+                // Not recreated for a configuration change anymore
+                RetainedBitmaps.clear();
+            }
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        bitmaps.evictAll();
+        BitmapReusePool.get().clear();
+        RetainedBitmaps.clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    private static final class Entry {
+
+        final Bitmap bitmap;
+        final int orientation;
+
+        Entry(Bitmap bitmap, int orientation) {
+            this.bitmap = bitmap;
+            this.orientation = orientation;
+        }
+    }
+
+    static final class Key {
+
+        private final Object model;
+        private final int viewportWidth;
+        private final int viewportHeight;
+        private final Bitmap.Config config;
+
+        Key(Object model, int viewportWidth, int viewportHeight, Bitmap.Config config) {
+            this.model = model;
+            this.viewportWidth = viewportWidth;
+            this.viewportHeight = viewportHeight;
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return viewportWidth == other.viewportWidth && viewportHeight == other.viewportHeight
+                    && config == other.config && model.equals(other.model);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = model.hashCode();
+            result = 31 * result + viewportWidth;
+            result = 31 * result + viewportHeight;
+            result = 31 * result + config.hashCode();
+            return result;
+        }
+    }
+}
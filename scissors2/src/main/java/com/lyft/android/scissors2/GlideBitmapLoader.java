@@ -15,15 +15,20 @@
  */
 package com.lyft.android.scissors2;
 
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.widget.ImageView;
 
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DecodeFormat;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
 import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.ImageViewTarget;
 
 /**
  * A {@link BitmapLoader} with transformation for {@link Glide} image library.
@@ -31,26 +36,71 @@ import com.bumptech.glide.request.RequestOptions;
  * @see GlideBitmapLoader#createUsing(CropView)
  * @see GlideBitmapLoader#createUsing(CropView, RequestManager)
  */
-public class GlideBitmapLoader implements BitmapLoader {
+public class GlideBitmapLoader implements RecyclingBitmapLoader {
 
     private final RequestManager requestManager;
     private final BitmapTransformation transformation;
+    private final int viewportWidth;
+    private final int viewportHeight;
+    private final boolean cacheInMemory;
+    private final int displayQuality;
 
     public GlideBitmapLoader(@NonNull RequestManager requestManager, @NonNull BitmapTransformation transformation) {
+        this(requestManager, transformation, 0, 0);
+    }
+
+    public GlideBitmapLoader(@NonNull RequestManager requestManager, @NonNull BitmapTransformation transformation,
+            int viewportWidth, int viewportHeight) {
+        this(requestManager, transformation, viewportWidth, viewportHeight, false);
+    }
+
+    /**
+     * @param viewportWidth Width images are downsampled to while decoding, along with <code>viewportHeight</code>, so
+     * that <code>transformation</code> has little left to do
+     * @param cacheInMemory Whether to keep loaded bitmaps in Glide's memory cache, keyed by viewport size since the
+     * transformation is part of the key
+     */
+    public GlideBitmapLoader(@NonNull RequestManager requestManager, @NonNull BitmapTransformation transformation,
+            int viewportWidth, int viewportHeight, boolean cacheInMemory) {
+        this(requestManager, transformation, viewportWidth, viewportHeight, cacheInMemory,
+                CropViewConfig.DEFAULT_DISPLAY_QUALITY);
+    }
+
+    /**
+     * @param displayQuality {@link CropView.DisplayQuality#LOW_MEMORY} decodes opaque images as
+     * {@link android.graphics.Bitmap.Config#RGB_565}, {@link CropView.DisplayQuality#HARDWARE} is not supported by this
+     * loader and treated as {@link CropView.DisplayQuality#FULL}
+     */
+    public GlideBitmapLoader(@NonNull RequestManager requestManager, @NonNull BitmapTransformation transformation,
+            int viewportWidth, int viewportHeight, boolean cacheInMemory, @CropView.DisplayQuality int displayQuality) {
         this.requestManager = requestManager;
         this.transformation = transformation;
+        this.viewportWidth = viewportWidth;
+        this.viewportHeight = viewportHeight;
+        this.cacheInMemory = cacheInMemory;
+        this.displayQuality = displayQuality;
     }
 
     @Override
     public void load(@Nullable Object model, @NonNull ImageView imageView) {
         RequestOptions requestOptions = new RequestOptions();
-        requestOptions.skipMemoryCache(true)
+        requestOptions.skipMemoryCache(!cacheInMemory)
                 .diskCacheStrategy(DiskCacheStrategy.DATA)
                 .transform(transformation);
+        if (displayQuality == CropView.DisplayQuality.LOW_MEMORY) {
+            // Glide only picks RGB_565 for images without alpha
+            requestOptions.format(DecodeFormat.PREFER_RGB_565);
+        }
+        if (viewportWidth > 0 && viewportHeight > 0) {
+            // Decode straight to the size filling the viewport instead of scaling a full size bitmap afterwards
+            requestOptions.downsample(DownsampleStrategy.CENTER_OUTSIDE)
+                    .override(viewportWidth, viewportHeight);
+        }
 
         requestManager.asBitmap()
                 .load(model)
-                .apply(requestOptions);
+                .apply(requestOptions)
+                .into(new CropViewTarget(imageView));
     }
 
     public static BitmapLoader createUsing(@NonNull CropView cropView) {
@@ -58,7 +108,50 @@ public class GlideBitmapLoader implements BitmapLoader {
     }
 
     public static BitmapLoader createUsing(@NonNull CropView cropView, @NonNull RequestManager requestManager) {
+        return createUsing(cropView, requestManager, false);
+    }
+
+    /**
+     * @param cacheInMemory Whether to keep loaded bitmaps in Glide's memory cache, so that opening the same image
+     * again in a viewport of the same size doesn't decode it again
+     */
+    public static BitmapLoader createUsing(@NonNull CropView cropView, @NonNull RequestManager requestManager,
+            boolean cacheInMemory) {
+        final int viewportWidth = cropView.getViewportWidth();
+        final int viewportHeight = cropView.getViewportHeight();
         return new GlideBitmapLoader(requestManager,
-                GlideFillViewportTransformation.createUsing(cropView.getViewportWidth(), cropView.getViewportHeight()));
+                GlideFillViewportTransformation.createUsing(viewportWidth, viewportHeight), viewportWidth, viewportHeight,
+                cacheInMemory, cropView.getDisplayQuality());
+    }
+
+    /**
+     * Hands loaded bitmaps to the view as is, {@link CropView} swaps them in with
+     * {@link CropView#changeImageBitmap(Bitmap)} semantics when they refine a preview. Also leaves whatever is
+     * displayed in place while loading or on failure, unless a placeholder or error drawable was given.
+     */
+    private static class CropViewTarget extends ImageViewTarget<Bitmap> {
+
+        CropViewTarget(ImageView view) {
+            super(view);
+        }
+
+        @Override
+        public void onLoadStarted(@Nullable Drawable placeholder) {
+            if (placeholder != null) {
+                super.onLoadStarted(placeholder);
+            }
+        }
+
+        @Override
+        public void onLoadFailed(@Nullable Drawable errorDrawable) {
+            if (errorDrawable != null) {
+                super.onLoadFailed(errorDrawable);
+            }
+        }
+
+        @Override
+        protected void setResource(@Nullable Bitmap resource) {
+            view.setImageBitmap(resource);
+        }
     }
 }
@@ -16,11 +16,14 @@
 package com.lyft.android.scissors2;
 
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
 import android.graphics.Rect;
 
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.security.MessageDigest;
 
@@ -29,6 +32,8 @@ class GlideFillViewportTransformation extends BitmapTransformation {
     private static final String ID = "com.lyft.android.scissors.GlideFillViewportTransformation";
     private static final byte[] ID_BYTES = ID.getBytes(Charset.defaultCharset());
 
+    private static final Paint PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+
     private final int viewportWidth;
     private final int viewportHeight;
 
@@ -47,11 +52,16 @@ class GlideFillViewportTransformation extends BitmapTransformation {
         int targetWidth = target.width();
         int targetHeight = target.height();
 
-        return Bitmap.createScaledBitmap(
-                source,
-                targetWidth,
-                targetHeight,
-                true);
+        if (CropViewExtensions.isTargetSize(sourceWidth, sourceHeight, target)) {
+            // Already downsampled to the viewport while decoding
+            return source;
+        }
+
+        // Glide puts the source back into its pool once we return a different bitmap
+        final Bitmap.Config config = source.getConfig() != null ? source.getConfig() : Bitmap.Config.ARGB_8888;
+        final Bitmap result = bitmapPool.get(targetWidth, targetHeight, config);
+        new Canvas(result).drawBitmap(source, null, new Rect(0, 0, targetWidth, targetHeight), PAINT);
+        return result;
     }
 
     @Override
@@ -72,6 +82,7 @@ class GlideFillViewportTransformation extends BitmapTransformation {
     @Override
     public void updateDiskCacheKey(MessageDigest messageDigest) {
         messageDigest.update(ID_BYTES);
+        messageDigest.update(ByteBuffer.allocate(8).putInt(viewportWidth).putInt(viewportHeight).array());
     }
 
     public static BitmapTransformation createUsing(int viewportWidth, int viewportHeight) {
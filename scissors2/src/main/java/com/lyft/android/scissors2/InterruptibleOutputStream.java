@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Fails every write once the writing thread has been interrupted, which is the only way to abort
+ * {@link android.graphics.Bitmap#compress} half way. Also counts the bytes written through it.
+ */
+class InterruptibleOutputStream extends FilterOutputStream {
+
+    private long byteCount;
+
+    InterruptibleOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    long getByteCount() {
+        return byteCount;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        Utils.checkInterrupted();
+        out.write(b);
+        byteCount++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        Utils.checkInterrupted();
+        out.write(b, off, len);
+        byteCount += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        Utils.checkInterrupted();
+        out.flush();
+    }
+}
@@ -0,0 +1,531 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Baseline JPEG encoder (YCbCr 4:2:0, standard Huffman tables) which only buffers a single row of 16x16 MCUs.
+ */
+class JpegBandEncoder implements BandEncoder {
+
+    private static final int MCU_SIZE = 16;
+    private static final int MAX_DIMENSION = 65535;
+    private static final int MAX_AC_COEFFICIENT = 1023;
+
+    private static final int[] ZIGZAG = {
+            0, 1, 8, 16, 9, 2, 3, 10,
+            17, 24, 32, 25, 18, 11, 4, 5,
+            12, 19, 26, 33, 40, 48, 41, 34,
+            27, 20, 13, 6, 7, 14, 21, 28,
+            35, 42, 49, 56, 57, 50, 43, 36,
+            29, 22, 15, 23, 30, 37, 44, 51,
+            58, 59, 52, 45, 38, 31, 39, 46,
+            53, 60, 61, 54, 47, 55, 62, 63
+    };
+
+    private static final int[] LUMINANCE_QUANTIZATION = {
+            16, 11, 10, 16, 24, 40, 51, 61,
+            12, 12, 14, 19, 26, 58, 60, 55,
+            14, 13, 16, 24, 40, 57, 69, 56,
+            14, 17, 22, 29, 51, 87, 80, 62,
+            18, 22, 37, 56, 68, 109, 103, 77,
+            24, 35, 55, 64, 81, 104, 113, 92,
+            49, 64, 78, 87, 103, 121, 120, 101,
+            72, 92, 95, 98, 112, 100, 103, 99
+    };
+
+    private static final int[] CHROMINANCE_QUANTIZATION = {
+            17, 18, 24, 47, 99, 99, 99, 99,
+            18, 21, 26, 66, 99, 99, 99, 99,
+            24, 26, 56, 99, 99, 99, 99, 99,
+            47, 66, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99
+    };
+
+    private static final int[] DC_LUMINANCE_BITS = {0, 1, 5, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 0};
+    private static final int[] DC_LUMINANCE_VALUES = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+    private static final int[] DC_CHROMINANCE_BITS = {0, 3, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0};
+    private static final int[] DC_CHROMINANCE_VALUES = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+
+    private static final int[] AC_LUMINANCE_BITS = {0, 2, 1, 3, 3, 2, 4, 3, 5, 5, 4, 4, 0, 0, 1, 0x7d};
+    private static final int[] AC_LUMINANCE_VALUES = {
+            0x01, 0x02, 0x03, 0x00, 0x04, 0x11, 0x05, 0x12,
+            0x21, 0x31, 0x41, 0x06, 0x13, 0x51, 0x61, 0x07,
+            0x22, 0x71, 0x14, 0x32, 0x81, 0x91, 0xa1, 0x08,
+            0x23, 0x42, 0xb1, 0xc1, 0x15, 0x52, 0xd1, 0xf0,
+            0x24, 0x33, 0x62, 0x72, 0x82, 0x09, 0x0a, 0x16,
+            0x17, 0x18, 0x19, 0x1a, 0x25, 0x26, 0x27, 0x28,
+            0x29, 0x2a, 0x34, 0x35, 0x36, 0x37, 0x38, 0x39,
+            0x3a, 0x43, 0x44, 0x45, 0x46, 0x47, 0x48, 0x49,
+            0x4a, 0x53, 0x54, 0x55, 0x56, 0x57, 0x58, 0x59,
+            0x5a, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69,
+            0x6a, 0x73, 0x74, 0x75, 0x76, 0x77, 0x78, 0x79,
+            0x7a, 0x83, 0x84, 0x85, 0x86, 0x87, 0x88, 0x89,
+            0x8a, 0x92, 0x93, 0x94, 0x95, 0x96, 0x97, 0x98,
+            0x99, 0x9a, 0xa2, 0xa3, 0xa4, 0xa5, 0xa6, 0xa7,
+            0xa8, 0xa9, 0xaa, 0xb2, 0xb3, 0xb4, 0xb5, 0xb6,
+            0xb7, 0xb8, 0xb9, 0xba, 0xc2, 0xc3, 0xc4, 0xc5,
+            0xc6, 0xc7, 0xc8, 0xc9, 0xca, 0xd2, 0xd3, 0xd4,
+            0xd5, 0xd6, 0xd7, 0xd8, 0xd9, 0xda, 0xe1, 0xe2,
+            0xe3, 0xe4, 0xe5, 0xe6, 0xe7, 0xe8, 0xe9, 0xea,
+            0xf1, 0xf2, 0xf3, 0xf4, 0xf5, 0xf6, 0xf7, 0xf8,
+            0xf9, 0xfa
+    };
+
+    private static final int[] AC_CHROMINANCE_BITS = {0, 2, 1, 2, 4, 4, 3, 4, 7, 5, 4, 4, 0, 1, 2, 0x77};
+    private static final int[] AC_CHROMINANCE_VALUES = {
+            0x00, 0x01, 0x02, 0x03, 0x11, 0x04, 0x05, 0x21,
+            0x31, 0x06, 0x12, 0x41, 0x51, 0x07, 0x61, 0x71,
+            0x13, 0x22, 0x32, 0x81, 0x08, 0x14, 0x42, 0x91,
+            0xa1, 0xb1, 0xc1, 0x09, 0x23, 0x33, 0x52, 0xf0,
+            0x15, 0x62, 0x72, 0xd1, 0x0a, 0x16, 0x24, 0x34,
+            0xe1, 0x25, 0xf1, 0x17, 0x18, 0x19, 0x1a, 0x26,
+            0x27, 0x28, 0x29, 0x2a, 0x35, 0x36, 0x37, 0x38,
+            0x39, 0x3a, 0x43, 0x44, 0x45, 0x46, 0x47, 0x48,
+            0x49, 0x4a, 0x53, 0x54, 0x55, 0x56, 0x57, 0x58,
+            0x59, 0x5a, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68,
+            0x69, 0x6a, 0x73, 0x74, 0x75, 0x76, 0x77, 0x78,
+            0x79, 0x7a, 0x82, 0x83, 0x84, 0x85, 0x86, 0x87,
+            0x88, 0x89, 0x8a, 0x92, 0x93, 0x94, 0x95, 0x96,
+            0x97, 0x98, 0x99, 0x9a, 0xa2, 0xa3, 0xa4, 0xa5,
+            0xa6, 0xa7, 0xa8, 0xa9, 0xaa, 0xb2, 0xb3, 0xb4,
+            0xb5, 0xb6, 0xb7, 0xb8, 0xb9, 0xba, 0xc2, 0xc3,
+            0xc4, 0xc5, 0xc6, 0xc7, 0xc8, 0xc9, 0xca, 0xd2,
+            0xd3, 0xd4, 0xd5, 0xd6, 0xd7, 0xd8, 0xd9, 0xda,
+            0xe2, 0xe3, 0xe4, 0xe5, 0xe6, 0xe7, 0xe8, 0xe9,
+            0xea, 0xf2, 0xf3, 0xf4, 0xf5, 0xf6, 0xf7, 0xf8,
+            0xf9, 0xfa
+    };
+
+    private static final float[] AAN_SCALE_FACTORS = {
+            1.0f, 1.387039845f, 1.306562965f, 1.175875602f,
+            1.0f, 0.785694958f, 0.541196100f, 0.275899379f
+    };
+
+    private final int[] luminanceTable = new int[64];
+    private final int[] chrominanceTable = new int[64];
+    private final float[] luminanceDivisors = new float[64];
+    private final float[] chrominanceDivisors = new float[64];
+
+    private final HuffmanTable dcLuminance = new HuffmanTable(DC_LUMINANCE_BITS, DC_LUMINANCE_VALUES);
+    private final HuffmanTable acLuminance = new HuffmanTable(AC_LUMINANCE_BITS, AC_LUMINANCE_VALUES);
+    private final HuffmanTable dcChrominance = new HuffmanTable(DC_CHROMINANCE_BITS, DC_CHROMINANCE_VALUES);
+    private final HuffmanTable acChrominance = new HuffmanTable(AC_CHROMINANCE_BITS, AC_CHROMINANCE_VALUES);
+
+    private final float[] yBlocks = new float[4 * 64];
+    private final float[] cbBlock = new float[64];
+    private final float[] crBlock = new float[64];
+    private final int[] coefficients = new int[64];
+
+    private BitWriter writer;
+    private int width;
+    private int height;
+    private int[] rows;
+    private int bufferedRows;
+    private int encodedRows;
+    private int previousY;
+    private int previousCb;
+    private int previousCr;
+
+    /**
+     * @param quality Compression quality (0..100) using the same scaling as libjpeg
+     */
+    JpegBandEncoder(int quality) {
+        Utils.checkArg(quality >= 0 && quality <= 100, "quality must be 0..100");
+        final int scale = quality < 50 ? 5000 / Math.max(quality, 1) : 200 - quality * 2;
+        scaleTable(LUMINANCE_QUANTIZATION, scale, luminanceTable, luminanceDivisors);
+        scaleTable(CHROMINANCE_QUANTIZATION, scale, chrominanceTable, chrominanceDivisors);
+    }
+
+    @Override
+    public void begin(OutputStream outputStream, int width, int height) throws IOException {
+        Utils.checkArg(width > 0 && width <= MAX_DIMENSION && height > 0 && height <= MAX_DIMENSION,
+                "JPEG dimensions must be 1.." + MAX_DIMENSION);
+        this.writer = new BitWriter(outputStream);
+        this.width = width;
+        this.height = height;
+        this.rows = new int[width * MCU_SIZE];
+        this.bufferedRows = 0;
+        this.encodedRows = 0;
+        this.previousY = 0;
+        this.previousCb = 0;
+        this.previousCr = 0;
+        writeHeaders();
+    }
+
+    @Override
+    public void encode(int[] argb, int rowCount) throws IOException {
+        int offset = 0;
+        while (rowCount > 0) {
+            final int count = Math.min(rowCount, MCU_SIZE - bufferedRows);
+            System.arraycopy(argb, offset, rows, bufferedRows * width, count * width);
+            bufferedRows += count;
+            offset += count * width;
+            rowCount -= count;
+
+            if (bufferedRows == MCU_SIZE) {
+                encodeMcuRow();
+            }
+        }
+    }
+
+    @Override
+    public void end() throws IOException {
+        if (bufferedRows > 0) {
+            encodeMcuRow();
+        }
+        Utils.checkArg(encodedRows >= height, "Expected " + height + " rows, got " + encodedRows);
+        writer.flushBits();
+        writer.writeMarker(0xD9); // EOI
+        writer.flush();
+        abort();
+    }
+
+    @Override
+    public void abort() {
+        writer = null;
+        rows = null;
+    }
+
+    private void encodeMcuRow() throws IOException {
+        // Pad a partial last row of MCUs by repeating the last row of pixels
+        for (int row = bufferedRows; row < MCU_SIZE; row++) {
+            System.arraycopy(rows, (bufferedRows - 1) * width, rows, row * width, width);
+        }
+
+        for (int x = 0; x < width; x += MCU_SIZE) {
+            convertMcu(x);
+            previousY = encodeBlock(yBlocks, 0, previousY, luminanceDivisors, dcLuminance, acLuminance);
+            previousY = encodeBlock(yBlocks, 64, previousY, luminanceDivisors, dcLuminance, acLuminance);
+            previousY = encodeBlock(yBlocks, 128, previousY, luminanceDivisors, dcLuminance, acLuminance);
+            previousY = encodeBlock(yBlocks, 192, previousY, luminanceDivisors, dcLuminance, acLuminance);
+            previousCb = encodeBlock(cbBlock, 0, previousCb, chrominanceDivisors, dcChrominance, acChrominance);
+            previousCr = encodeBlock(crBlock, 0, previousCr, chrominanceDivisors, dcChrominance, acChrominance);
+        }
+
+        encodedRows += bufferedRows;
+        bufferedRows = 0;
+    }
+
+    /**
+     * Converts the 16x16 pixels starting at column <code>left</code> into four level shifted luminance blocks and one
+     * 2x2 averaged block per chrominance component.
+     */
+    private void convertMcu(int left) {
+        for (int i = 0; i < 64; i++) {
+            cbBlock[i] = 0;
+            crBlock[i] = 0;
+        }
+
+        for (int y = 0; y < MCU_SIZE; y++) {
+            final int rowOffset = y * width;
+            for (int x = 0; x < MCU_SIZE; x++) {
+                final int color = rows[rowOffset + Math.min(left + x, width - 1)];
+                final int alpha = color >>> 24;
+                int r = (color >> 16) & 0xff;
+                int g = (color >> 8) & 0xff;
+                int b = color & 0xff;
+                if (alpha != 0xff) {
+                    // Same as a premultiplied bitmap compressed by the framework, transparency turns black
+                    r = r * alpha / 0xff;
+                    g = g * alpha / 0xff;
+                    b = b * alpha / 0xff;
+                }
+
+                final int block = (y >> 3) * 2 + (x >> 3);
+                yBlocks[block * 64 + (y & 7) * 8 + (x & 7)] = 0.299f * r + 0.587f * g + 0.114f * b - 128f;
+
+                final int chroma = (y >> 1) * 8 + (x >> 1);
+                cbBlock[chroma] += -0.168736f * r - 0.331264f * g + 0.5f * b;
+                crBlock[chroma] += 0.5f * r - 0.418688f * g - 0.081312f * b;
+            }
+        }
+
+        for (int i = 0; i < 64; i++) {
+            cbBlock[i] /= 4f;
+            crBlock[i] /= 4f;
+        }
+    }
+
+    private int encodeBlock(float[] data, int offset, int previousDc, float[] divisors, HuffmanTable dc,
+            HuffmanTable ac) throws IOException {
+        forwardDct(data, offset);
+        coefficients[0] = Math.round(data[offset] * divisors[0]);
+        for (int i = 1; i < 64; i++) {
+            final int value = Math.round(data[offset + i] * divisors[i]);
+            coefficients[i] = Math.max(-MAX_AC_COEFFICIENT, Math.min(value, MAX_AC_COEFFICIENT));
+        }
+
+        final int dcValue = coefficients[0];
+        final int diff = dcValue - previousDc;
+        final int dcSize = bitLength(diff);
+        dc.write(writer, dcSize);
+        writeAdditionalBits(diff, dcSize);
+
+        int run = 0;
+        for (int k = 1; k < 64; k++) {
+            final int value = coefficients[ZIGZAG[k]];
+            if (value == 0) {
+                run++;
+                continue;
+            }
+            while (run > 15) {
+                ac.write(writer, 0xF0); // ZRL
+                run -= 16;
+            }
+            final int size = bitLength(value);
+            ac.write(writer, (run << 4) | size);
+            writeAdditionalBits(value, size);
+            run = 0;
+        }
+        if (run > 0) {
+            ac.write(writer, 0x00); // EOB
+        }
+        return dcValue;
+    }
+
+    private void writeAdditionalBits(int value, int size) throws IOException {
+        if (size > 0) {
+            writer.writeBits(value < 0 ? value - 1 : value, size);
+        }
+    }
+
+    /**
+     * In place AA&N float forward DCT, output is scaled by the AA&N factors which are folded into the divisors.
+     */
+    private static void forwardDct(float[] data, int offset) {
+        for (int pass = 0; pass < 2; pass++) {
+            final int step = pass == 0 ? 1 : 8;
+            final int stride = pass == 0 ? 8 : 1;
+            for (int i = 0; i < 8; i++) {
+                final int p = offset + i * stride;
+                final float d0 = data[p], d1 = data[p + step], d2 = data[p + 2 * step], d3 = data[p + 3 * step];
+                final float d4 = data[p + 4 * step], d5 = data[p + 5 * step], d6 = data[p + 6 * step];
+                final float d7 = data[p + 7 * step];
+
+                final float tmp0 = d0 + d7;
+                final float tmp7 = d0 - d7;
+                final float tmp1 = d1 + d6;
+                final float tmp6 = d1 - d6;
+                final float tmp2 = d2 + d5;
+                final float tmp5 = d2 - d5;
+                final float tmp3 = d3 + d4;
+                final float tmp4 = d3 - d4;
+
+                // Even part
+                float tmp10 = tmp0 + tmp3;
+                final float tmp13 = tmp0 - tmp3;
+                float tmp11 = tmp1 + tmp2;
+                float tmp12 = tmp1 - tmp2;
+
+                data[p] = tmp10 + tmp11;
+                data[p + 4 * step] = tmp10 - tmp11;
+
+                final float z1 = (tmp12 + tmp13) * 0.707106781f;
+                data[p + 2 * step] = tmp13 + z1;
+                data[p + 6 * step] = tmp13 - z1;
+
+                // Odd part
+                tmp10 = tmp4 + tmp5;
+                tmp11 = tmp5 + tmp6;
+                tmp12 = tmp6 + tmp7;
+
+                final float z5 = (tmp10 - tmp12) * 0.382683433f;
+                final float z2 = 0.541196100f * tmp10 + z5;
+                final float z4 = 1.306562965f * tmp12 + z5;
+                final float z3 = tmp11 * 0.707106781f;
+
+                final float z11 = tmp7 + z3;
+                final float z13 = tmp7 - z3;
+
+                data[p + 5 * step] = z13 + z2;
+                data[p + 3 * step] = z13 - z2;
+                data[p + step] = z11 + z4;
+                data[p + 7 * step] = z11 - z4;
+            }
+        }
+    }
+
+    private static int bitLength(int value) {
+        return 32 - Integer.numberOfLeadingZeros(Math.abs(value));
+    }
+
+    private static void scaleTable(int[] base, int scale, int[] table, float[] divisors) {
+        for (int i = 0; i < 64; i++) {
+            table[i] = Math.max(1, Math.min((base[i] * scale + 50) / 100, 255));
+        }
+        for (int row = 0; row < 8; row++) {
+            for (int column = 0; column < 8; column++) {
+                final int i = row * 8 + column;
+                divisors[i] = 1f / (table[i] * AAN_SCALE_FACTORS[row] * AAN_SCALE_FACTORS[column] * 8f);
+            }
+        }
+    }
+
+    private void writeHeaders() throws IOException {
+        writer.writeMarker(0xD8); // SOI
+
+        writer.writeMarker(0xE0); // APP0 JFIF
+        writer.writeShort(16);
+        writer.writeBytes('J', 'F', 'I', 'F', 0, 1, 1, 0);
+        writer.writeShort(1);
+        writer.writeShort(1);
+        writer.writeBytes(0, 0);
+
+        writer.writeMarker(0xDB); // DQT
+        writer.writeShort(2 + 2 * 65);
+        writeQuantizationTable(0, luminanceTable);
+        writeQuantizationTable(1, chrominanceTable);
+
+        writer.writeMarker(0xC0); // SOF0
+        writer.writeShort(17);
+        writer.writeBytes(8);
+        writer.writeShort(height);
+        writer.writeShort(width);
+        writer.writeBytes(3, 1, 0x22, 0, 2, 0x11, 1, 3, 0x11, 1);
+
+        writer.writeMarker(0xC4); // DHT
+        writer.writeShort(2 + dcLuminance.length() + acLuminance.length()
+                + dcChrominance.length() + acChrominance.length());
+        dcLuminance.writeDefinition(writer, 0x00);
+        acLuminance.writeDefinition(writer, 0x10);
+        dcChrominance.writeDefinition(writer, 0x01);
+        acChrominance.writeDefinition(writer, 0x11);
+
+        writer.writeMarker(0xDA); // SOS
+        writer.writeShort(12);
+        writer.writeBytes(3, 1, 0x00, 2, 0x11, 3, 0x11, 0, 63, 0);
+    }
+
+    private void writeQuantizationTable(int id, int[] table) throws IOException {
+        writer.writeBytes(id);
+        for (int k = 0; k < 64; k++) {
+            writer.writeBytes(table[ZIGZAG[k]]);
+        }
+    }
+
+    private static class HuffmanTable {
+
+        private final int[] bits;
+        private final int[] values;
+        private final int[] codes = new int[256];
+        private final int[] sizes = new int[256];
+
+        HuffmanTable(int[] bits, int[] values) {
+            this.bits = bits;
+            this.values = values;
+
+            int code = 0;
+            int k = 0;
+            for (int length = 1; length <= 16; length++) {
+                for (int i = 0; i < bits[length - 1]; i++) {
+                    codes[values[k]] = code;
+                    sizes[values[k]] = length;
+                    code++;
+                    k++;
+                }
+                code <<= 1;
+            }
+        }
+
+        void write(BitWriter writer, int symbol) throws IOException {
+            writer.writeBits(codes[symbol], sizes[symbol]);
+        }
+
+        int length() {
+            return 1 + 16 + values.length;
+        }
+
+        void writeDefinition(BitWriter writer, int classAndId) throws IOException {
+            writer.writeBytes(classAndId);
+            for (int count : bits) {
+                writer.writeBytes(count);
+            }
+            for (int value : values) {
+                writer.writeBytes(value);
+            }
+        }
+    }
+
+    /**
+     * Buffered writer for the entropy coded segment, takes care of 0xFF byte stuffing.
+     */
+    private static class BitWriter {
+
+        private final OutputStream outputStream;
+        private final byte[] buffer = new byte[8192];
+        private int position;
+        private int bitBuffer;
+        private int bitCount;
+
+        BitWriter(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        void writeBits(int value, int size) throws IOException {
+            bitBuffer = (bitBuffer << size) | (value & ((1 << size) - 1));
+            bitCount += size;
+            while (bitCount >= 8) {
+                final int b = (bitBuffer >> (bitCount - 8)) & 0xff;
+                write(b);
+                if (b == 0xff) {
+                    write(0);
+                }
+                bitCount -= 8;
+            }
+        }
+
+        void flushBits() throws IOException {
+            if (bitCount > 0) {
+                writeBits(0x7f, 8 - bitCount); // pad with ones
+            }
+            bitBuffer = 0;
+        }
+
+        void writeMarker(int marker) throws IOException {
+            write(0xff);
+            write(marker);
+        }
+
+        void writeShort(int value) throws IOException {
+            write((value >> 8) & 0xff);
+            write(value & 0xff);
+        }
+
+        void writeBytes(int... values) throws IOException {
+            for (int value : values) {
+                write(value);
+            }
+        }
+
+        void flush() throws IOException {
+            outputStream.write(buffer, 0, position);
+            position = 0;
+        }
+
+        private void write(int b) throws IOException {
+            if (position == buffer.length) {
+                flush();
+            }
+            buffer[position++] = (byte) b;
+        }
+    }
+}
@@ -1,17 +1,29 @@
 package com.lyft.android.scissors2;
 
+import android.content.Context;
 import android.graphics.Bitmap;
 import android.support.annotation.Nullable;
+import android.util.Log;
 import android.view.ViewTreeObserver;
 
+import java.util.concurrent.Callable;
+
 import static com.lyft.android.scissors2.CropView.Extensions.LoaderType;
 import static com.lyft.android.scissors2.CropViewExtensions.resolveBitmapLoader;
 
 public class LoadRequest {
 
+    private static final String TAG = "scissors.LoadRequest";
+    /**
+     * Previews are cheap and shown first, start them before loads and crops.
+     */
+    private static final int PREVIEW_PRIORITY = 2;
+
     private final CropView cropView;
     private BitmapLoader bitmapLoader;
     private LoaderType loaderType = LoaderType.CLASS_LOOKUP;
+    private boolean preview;
+    private boolean cacheInMemory;
 
     LoadRequest(CropView cropView) {
         Utils.checkNotNull(cropView, "cropView == null");
@@ -41,6 +53,36 @@ public class LoadRequest {
         return this;
     }
 
+    /**
+     * Show a low resolution preview while the {@link BitmapLoader} is still loading, decoded from the embedded EXIF
+     * thumbnail or heavily subsampled. The user can start panning and zooming right away, the loaded {@link Bitmap}
+     * then replaces the preview without resetting them.
+     * <p>
+     * Only models readable by {@link android.content.ContentResolver} or from disk are previewed: {@link
+     * android.net.Uri}, {@link java.io.File}, {@link String} paths or uris and {@link Integer} resource ids.
+     *
+     * @return current request for chaining, you should call {@link #load(Object)} afterwards.
+     */
+    public LoadRequest preview() {
+        this.preview = true;
+        return this;
+    }
+
+    /**
+     * Keep the loaded {@link Bitmap} in a memory cache shared by every {@link CropView}, keyed by model and viewport
+     * size, so that loading the same model again, e.g. after a configuration change, is instant. The cache is bounded
+     * and trimmed when the system runs low on memory.
+     * <p>
+     * Ignored for {@link GlideBitmapLoader}, whose bitmaps belong to Glide, see
+     * {@link GlideBitmapLoader#createUsing(CropView, com.bumptech.glide.RequestManager, boolean)} instead.
+     *
+     * @return current request for chaining, you should call {@link #load(Object)} afterwards.
+     */
+    public LoadRequest cacheInMemory() {
+        this.cacheInMemory = true;
+        return this;
+    }
+
     /**
      * Load a {@link Bitmap} using a {@link BitmapLoader} into {@link CropView}
      *
@@ -59,6 +101,27 @@ public class LoadRequest {
         if (bitmapLoader == null) {
             bitmapLoader = resolveBitmapLoader(cropView, loaderType);
         }
+        final FillViewportCache.Key cacheKey = cacheInMemory && model != null
+                && !(bitmapLoader instanceof RecyclingBitmapLoader)
+                ? FillViewportCache.createKey(model, cropView.getViewportWidth(), cropView.getViewportHeight(),
+                        // Keyed by the best config the quality allows, the decoded one depends on the image
+                        CropViewConfig.getDisplayConfig(cropView.getDisplayQuality(), true))
+                : null;
+        final int generation = cropView.beginLoad(model, cacheKey, bitmapLoader instanceof RecyclingBitmapLoader);
+        if (cacheKey != null) {
+            final FillViewportCache cache = FillViewportCache.get(cropView.getContext());
+            final Bitmap cached = cache.get(cacheKey);
+            if (cached != null) {
+                // Cancel whatever the loader is still doing for this view so that it doesn't override the cached bitmap
+                bitmapLoader.load(null, cropView);
+                cropView.setImageBitmap(cached, cache.getOrientation(cacheKey));
+                return;
+            }
+        }
+        if (preview && model != null) {
+            CropExecutor.submit(CropExecutor.getDefault(),
+                    new PreviewTask(cropView, generation, model), PREVIEW_PRIORITY);
+        }
         bitmapLoader.load(model, cropView);
     }
 
@@ -79,4 +142,51 @@ public class LoadRequest {
                 }
         );
     }
+
+    private static class PreviewTask implements Callable<Void> {
+
+        private final CropView cropView;
+        private final Context context;
+        private final int generation;
+        private final Object model;
+        private final int viewportWidth;
+        private final int viewportHeight;
+
+        PreviewTask(CropView cropView, int generation, Object model) {
+            this.cropView = cropView;
+            this.context = cropView.getContext().getApplicationContext();
+            this.generation = generation;
+            this.model = model;
+            this.viewportWidth = cropView.getViewportWidth();
+            this.viewportHeight = cropView.getViewportHeight();
+        }
+
+        @Override
+        public Void call() {
+            final Bitmap preview;
+            final int orientation;
+            try {
+                orientation = ExifOrientation.read(context, model);
+                preview = PreviewDecoder.decode(context, model, orientation, viewportWidth, viewportHeight);
+            } catch (Exception e) {
+                // The loader reports its own failures, it just won't have a preview
+                if (BuildConfig.DEBUG) {
+                    Log.w(TAG, "Unable to decode a preview of " + model, e);
+                }
+                return null;
+            }
+            if (preview == null) {
+                return null;
+            }
+            MainThreadExecutor.INSTANCE.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!cropView.setPreviewBitmap(generation, preview, orientation)) {
+                        preview.recycle();
+                    }
+                }
+            });
+            return null;
+        }
+    }
 }
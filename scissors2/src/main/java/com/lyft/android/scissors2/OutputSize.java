@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Rect;
+
+/**
+ * Size a crop is scaled to, either exactly or to fit in, resolved against the size of what gets cropped.
+ */
+final class OutputSize {
+
+    /**
+     * Leaves crops at their own size.
+     */
+    static final OutputSize NATURAL = new OutputSize(0, 0, false);
+
+    private final int width;
+    private final int height;
+    private final boolean fit;
+
+    /**
+     * @param fit Whether to scale down to fit in <code>width</code> by <code>height</code> keeping the crop ratio,
+     * rather than to exactly that size
+     */
+    OutputSize(int width, int height, boolean fit) {
+        this.width = width;
+        this.height = height;
+        this.fit = fit;
+    }
+
+    Rect resolve(int cropWidth, int cropHeight) {
+        if (this == NATURAL) {
+            return new Rect(0, 0, cropWidth, cropHeight);
+        }
+        return fit ? CropViewExtensions.computeOutputSize(cropWidth, cropHeight, width, height)
+                : new Rect(0, 0, width, height);
+    }
+}
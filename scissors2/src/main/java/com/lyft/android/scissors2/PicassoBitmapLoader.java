@@ -15,6 +15,10 @@
  */
 package com.lyft.android.scissors2;
 
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Rect;
 import android.net.Uri;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -25,6 +29,10 @@ import com.squareup.picasso.RequestCreator;
 import com.squareup.picasso.Transformation;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
 
 /**
  * A {@link BitmapLoader} with transformation for {@link Picasso} image library.
@@ -34,16 +42,45 @@ import java.io.File;
  */
 public class PicassoBitmapLoader implements BitmapLoader {
 
+    /**
+     * Latest load of each view, only accessed from the main thread.
+     */
+    private static final Map<ImageView, Object> PENDING_LOADS = new WeakHashMap<>();
+
     private final Picasso picasso;
     private final Transformation transformation;
+    private final int viewportWidth;
+    private final int viewportHeight;
+    private final int displayQuality;
 
     public PicassoBitmapLoader(Picasso picasso, Transformation transformation) {
+        this(picasso, transformation, 0, 0);
+    }
+
+    /**
+     * @param viewportWidth Width local images are resized to while decoding, along with <code>viewportHeight</code>,
+     * so that <code>transformation</code> has little left to do
+     */
+    public PicassoBitmapLoader(Picasso picasso, Transformation transformation, int viewportWidth, int viewportHeight) {
+        this(picasso, transformation, viewportWidth, viewportHeight, CropViewConfig.DEFAULT_DISPLAY_QUALITY);
+    }
+
+    /**
+     * @param displayQuality {@link CropView.DisplayQuality#LOW_MEMORY} decodes local JPEG images as
+     * {@link Bitmap.Config#RGB_565}, {@link CropView.DisplayQuality#HARDWARE} is not supported by this loader and
+     * treated as {@link CropView.DisplayQuality#FULL}
+     */
+    public PicassoBitmapLoader(Picasso picasso, Transformation transformation, int viewportWidth, int viewportHeight,
+            @CropView.DisplayQuality int displayQuality) {
         this.picasso = picasso;
         this.transformation = transformation;
+        this.viewportWidth = viewportWidth;
+        this.viewportHeight = viewportHeight;
+        this.displayQuality = displayQuality;
     }
 
     @Override
-    public void load(@Nullable Object model, @NonNull ImageView imageView) {
+    public void load(@Nullable final Object model, @NonNull final ImageView imageView) {
         final RequestCreator requestCreator;
 
         if (model instanceof Uri || model == null) {
@@ -58,9 +95,60 @@ public class PicassoBitmapLoader implements BitmapLoader {
             throw new IllegalArgumentException("Unsupported model " + model);
         }
 
-        requestCreator
-                .transform(transformation)
-                .into(imageView);
+        requestCreator.transform(transformation);
+
+        PENDING_LOADS.remove(imageView);
+        if (model == null || viewportWidth <= 0 || viewportHeight <= 0 || isRemote(model)) {
+            requestCreator.into(imageView);
+            return;
+        }
+
+        // Picasso can only resize to a given size, read the image bounds first to find the one filling the viewport
+        picasso.cancelRequest(imageView);
+        final Object token = new Object();
+        PENDING_LOADS.put(imageView, token);
+        final Context context = imageView.getContext().getApplicationContext();
+        CropExecutor.submit(CropExecutor.getDefault(), new Callable<Void>() {
+            @Override
+            public Void call() {
+                Rect target = null;
+                boolean opaque = false;
+                try {
+                    final BitmapFactory.Options bounds = BuiltInBitmapLoader.decodeBounds(context, model);
+                    target = CropViewExtensions.computeTargetSize(bounds.outWidth, bounds.outHeight,
+                            viewportWidth, viewportHeight);
+                    opaque = BuiltInBitmapLoader.isOpaque(bounds);
+                } catch (IOException | RuntimeException e) {
+                    // Let Picasso decode it as usual and report the failure if any
+                }
+                final Rect size = target;
+                final Bitmap.Config config = CropViewConfig.getDisplayConfig(displayQuality, opaque);
+                MainThreadExecutor.INSTANCE.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (PENDING_LOADS.get(imageView) != token) {
+                            return;
+                        }
+                        PENDING_LOADS.remove(imageView);
+                        if (size != null) {
+                            requestCreator.resize(size.width(), size.height());
+                        }
+                        if (config == Bitmap.Config.RGB_565) {
+                            requestCreator.config(config);
+                        }
+                        requestCreator.into(imageView);
+                    }
+                });
+                return null;
+            }
+        }, BuiltInBitmapLoader.LOAD_PRIORITY, false);
+    }
+
+    private static boolean isRemote(Object model) {
+        final Uri uri = model instanceof Uri ? (Uri) model
+                : model instanceof String ? Uri.parse((String) model) : null;
+        final String scheme = uri != null ? uri.getScheme() : null;
+        return "http".equals(scheme) || "https".equals(scheme);
     }
 
     public static BitmapLoader createUsing(CropView cropView) {
@@ -68,7 +156,10 @@ public class PicassoBitmapLoader implements BitmapLoader {
     }
 
     public static BitmapLoader createUsing(CropView cropView, Picasso picasso) {
+        final int viewportWidth = cropView.getViewportWidth();
+        final int viewportHeight = cropView.getViewportHeight();
         return new PicassoBitmapLoader(picasso,
-                PicassoFillViewportTransformation.createUsing(cropView.getViewportWidth(), cropView.getViewportHeight()));
+                PicassoFillViewportTransformation.createUsing(viewportWidth, viewportHeight), viewportWidth,
+                viewportHeight, cropView.getDisplayQuality());
     }
 }
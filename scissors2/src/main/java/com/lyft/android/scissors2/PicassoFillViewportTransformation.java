@@ -35,11 +35,12 @@ class PicassoFillViewportTransformation implements Transformation {
         int sourceHeight = source.getHeight();
 
         Rect target = CropViewExtensions.computeTargetSize(sourceWidth, sourceHeight, viewportWidth, viewportHeight);
-        final Bitmap result = Bitmap.createScaledBitmap(
-                source,
-                target.width(),
-                target.height(),
-                true);
+        if (CropViewExtensions.isTargetSize(sourceWidth, sourceHeight, target)) {
+            // Already resized while decoding
+            return source;
+        }
+
+        final Bitmap result = BitmapReusePool.get().scale(source, target.width(), target.height());
 
         if (result != source) {
             source.recycle();
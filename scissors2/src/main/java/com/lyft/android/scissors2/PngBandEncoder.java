@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * RGBA PNG encoder which deflates rows as they come and streams them out as IDAT chunks.
+ */
+class PngBandEncoder implements BandEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int BYTES_PER_PIXEL = 4;
+    private static final int FILTER_PAETH = 4;
+    private static final byte[] IHDR = {'I', 'H', 'D', 'R'};
+    private static final byte[] IDAT = {'I', 'D', 'A', 'T'};
+    private static final byte[] IEND = {'I', 'E', 'N', 'D'};
+
+    private final CRC32 crc = new CRC32();
+    private final byte[] chunkBuffer = new byte[32 * 1024];
+    private final byte[] intBuffer = new byte[4];
+
+    private OutputStream outputStream;
+    private Deflater deflater;
+    private int width;
+    private byte[] row;
+    private byte[] previousRow;
+    private byte[] filteredRow;
+
+    @Override
+    public void begin(OutputStream outputStream, int width, int height) throws IOException {
+        Utils.checkArg(width > 0 && height > 0, "PNG dimensions must be positive");
+        this.outputStream = outputStream;
+        this.width = width;
+        this.deflater = new Deflater();
+        this.row = new byte[width * BYTES_PER_PIXEL];
+        this.previousRow = new byte[width * BYTES_PER_PIXEL];
+        this.filteredRow = new byte[1 + width * BYTES_PER_PIXEL];
+
+        outputStream.write(SIGNATURE);
+
+        final byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8; // bit depth
+        header[9] = 6; // color type, RGBA
+        writeChunk(IHDR, header, header.length);
+    }
+
+    @Override
+    public void encode(int[] argb, int rowCount) throws IOException {
+        for (int y = 0; y < rowCount; y++) {
+            final int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                final int color = argb[offset + x];
+                final int i = x * BYTES_PER_PIXEL;
+                row[i] = (byte) (color >> 16);
+                row[i + 1] = (byte) (color >> 8);
+                row[i + 2] = (byte) color;
+                row[i + 3] = (byte) (color >>> 24);
+            }
+            filterRow();
+
+            deflater.setInput(filteredRow);
+            drainDeflater();
+
+            final byte[] swap = previousRow;
+            previousRow = row;
+            row = swap;
+        }
+    }
+
+    @Override
+    public void end() throws IOException {
+        deflater.finish();
+        drainDeflater();
+        writeChunk(IEND, chunkBuffer, 0);
+        outputStream.flush();
+        abort();
+    }
+
+    @Override
+    public void abort() {
+        if (deflater != null) {
+            // Frees the native zlib memory right away rather than on finalization
+            deflater.end();
+        }
+        outputStream = null;
+        deflater = null;
+        row = null;
+        previousRow = null;
+        filteredRow = null;
+    }
+
+    private void filterRow() {
+        filteredRow[0] = FILTER_PAETH;
+        for (int i = 0; i < row.length; i++) {
+            final int a = i >= BYTES_PER_PIXEL ? row[i - BYTES_PER_PIXEL] & 0xff : 0;
+            final int b = previousRow[i] & 0xff;
+            final int c = i >= BYTES_PER_PIXEL ? previousRow[i - BYTES_PER_PIXEL] & 0xff : 0;
+            filteredRow[i + 1] = (byte) ((row[i] & 0xff) - paeth(a, b, c));
+        }
+    }
+
+    private void drainDeflater() throws IOException {
+        while (true) {
+            final int count = deflater.deflate(chunkBuffer);
+            if (count > 0) {
+                writeChunk(IDAT, chunkBuffer, count);
+            } else if (deflater.needsInput() || deflater.finished()) {
+                return;
+            }
+        }
+    }
+
+    private void writeChunk(byte[] type, byte[] data, int length) throws IOException {
+        putInt(intBuffer, 0, length);
+        outputStream.write(intBuffer);
+        outputStream.write(type);
+        outputStream.write(data, 0, length);
+
+        crc.reset();
+        crc.update(type);
+        crc.update(data, 0, length);
+        putInt(intBuffer, 0, (int) crc.getValue());
+        outputStream.write(intBuffer);
+    }
+
+    private static int paeth(int a, int b, int c) {
+        final int p = a + b - c;
+        final int pa = Math.abs(p - a);
+        final int pb = Math.abs(p - b);
+        final int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
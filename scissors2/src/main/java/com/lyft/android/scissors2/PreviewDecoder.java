@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Rect;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes a small, fast preview of an image: its embedded EXIF thumbnail when there is a usable one, otherwise a
+ * heavily subsampled decode.
+ */
+class PreviewDecoder {
+
+    /**
+     * Previews are decoded at roughly a quarter of the viewport size.
+     */
+    private static final int PREVIEW_REDUCTION = 4;
+    private static final float MAX_ASPECT_DIFFERENCE = 0.02f;
+
+    private PreviewDecoder() {
+    }
+
+    /**
+     * @param orientation EXIF orientation of the image, the preview keeps the stored pixels and is meant to be
+     * displayed with it
+     * @return The preview or <code>null</code> if the image could not be decoded.
+     */
+    @Nullable
+    static Bitmap decode(Context context, Object model, int orientation, int viewportWidth, int viewportHeight)
+            throws IOException {
+        final BitmapFactory.Options options = BuiltInBitmapLoader.decodeBounds(context, model);
+        final int sourceWidth = options.outWidth;
+        final int sourceHeight = options.outHeight;
+
+        final ExifInterface exif = readExif(context, model);
+        if (exif != null) {
+            final Bitmap thumbnail = decodeThumbnail(exif, sourceWidth, sourceHeight);
+            if (thumbnail != null) {
+                return thumbnail;
+            }
+        }
+
+        // The viewport is filled by the oriented image
+        final int previewWidth = Math.max(1, viewportWidth / PREVIEW_REDUCTION);
+        final int previewHeight = Math.max(1, viewportHeight / PREVIEW_REDUCTION);
+        final Rect target = CropViewExtensions.computeTargetSize(sourceWidth, sourceHeight,
+                ExifOrientation.getOrientedWidth(orientation, previewWidth, previewHeight),
+                ExifOrientation.getOrientedHeight(orientation, previewWidth, previewHeight));
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = CropViewExtensions.computeSampleSize(sourceWidth, sourceHeight,
+                target.width(), target.height());
+        return BuiltInBitmapLoader.decodeStream(context, model, options);
+    }
+
+    static boolean haveSameAspect(int width, int height, int otherWidth, int otherHeight) {
+        final float aspect = (float) width / height;
+        final float otherAspect = (float) otherWidth / otherHeight;
+        return Math.abs(aspect - otherAspect) <= MAX_ASPECT_DIFFERENCE * otherAspect;
+    }
+
+    @Nullable
+    private static Bitmap decodeThumbnail(ExifInterface exif, int sourceWidth, int sourceHeight) {
+        if (!exif.hasThumbnail()) {
+            return null;
+        }
+        final byte[] data = exif.getThumbnail();
+        final Bitmap thumbnail = data != null ? BitmapFactory.decodeByteArray(data, 0, data.length) : null;
+        if (thumbnail == null) {
+            return null;
+        }
+        // Some cameras letterbox their thumbnails, they would not line up with the full image
+        if (!haveSameAspect(thumbnail.getWidth(), thumbnail.getHeight(), sourceWidth, sourceHeight)) {
+            thumbnail.recycle();
+            return null;
+        }
+        return thumbnail;
+    }
+
+    @Nullable
+    private static ExifInterface readExif(Context context, Object model) {
+        try {
+            if (model instanceof File) {
+                return new ExifInterface(((File) model).getAbsolutePath());
+            }
+            if (model instanceof String && Uri.parse((String) model).getScheme() == null) {
+                return new ExifInterface((String) model);
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                final InputStream inputStream = Utils.openInputStream(context, model);
+                try {
+                    return new ExifInterface(inputStream);
+                } finally {
+                    Utils.closeQuietly(inputStream);
+                }
+            }
+        } catch (IOException e) {
+            // Not a JPEG or unreadable, fall back to a subsampled decode
+        }
+        return null;
+    }
+}
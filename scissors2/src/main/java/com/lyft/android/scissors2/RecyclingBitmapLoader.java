@@ -0,0 +1,23 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+/**
+ * A {@link BitmapLoader} whose image library takes delivered bitmaps back, to reuse or recycle them, once the view
+ * stops displaying them. They must not be kept around, e.g. in {@link FillViewportCache}.
+ */
+interface RecyclingBitmapLoader extends BitmapLoader {
+}
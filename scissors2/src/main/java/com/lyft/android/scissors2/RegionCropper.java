@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.media.ExifInterface;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Crops straight from the original image using {@link BitmapRegionDecoder}, only the pixels inside the crop rect are
+ * ever decoded.
+ */
+class RegionCropper {
+
+    private RegionCropper() {
+    }
+
+    /**
+     * @param storedRect Rect to crop, normalized over the stored pixels of the image
+     * @param orientation EXIF orientation applied to the decoded pixels, see {@link ExifOrientation}
+     */
+    static Bitmap decodeRegion(Context context, Object model, RectF storedRect, int orientation, Bitmap.Config config)
+            throws IOException {
+        return decodeRegion(context, model, storedRect, orientation, config, 0, 0);
+    }
+
+    /**
+     * Same as {@link #decodeRegion(Context, Object, RectF, int, Bitmap.Config)}, subsampled and scaled to
+     * <code>width</code> by <code>height</code> once oriented unless either is 0.
+     */
+    static Bitmap decodeRegion(Context context, Object model, RectF storedRect, int orientation, Bitmap.Config config,
+            int width, int height) throws IOException {
+        final BitmapRegionDecoder decoder = newDecoder(context, model);
+        try {
+            final Rect region = toSourceRect(storedRect, decoder.getWidth(), decoder.getHeight());
+            final int regionWidth = ExifOrientation.getOrientedWidth(orientation, region.width(), region.height());
+            final int regionHeight = ExifOrientation.getOrientedHeight(orientation, region.width(), region.height());
+            final boolean scale = width > 0 && height > 0;
+            final int targetWidth = scale ? width : regionWidth;
+            final int targetHeight = scale ? height : regionHeight;
+
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = config;
+            options.inSampleSize = CropViewExtensions.computeSampleSize(regionWidth, regionHeight, targetWidth,
+                    targetHeight);
+            final Bitmap bitmap = decoder.decodeRegion(region, options);
+            if (bitmap == null) {
+                throw new IOException("Unable to decode " + region + " of " + model);
+            }
+            return orient(bitmap, orientation, targetWidth, targetHeight);
+        } finally {
+            decoder.recycle();
+        }
+    }
+
+    /**
+     * Draws <code>bitmap</code> with <code>orientation</code> applied and scaled to <code>width</code> by
+     * <code>height</code>, in a single pass. <code>bitmap</code> is given back to the {@link BitmapReusePool} unless
+     * returned as is.
+     */
+    static Bitmap orient(Bitmap bitmap, int orientation, int width, int height) {
+        final BitmapReusePool pool = BitmapReusePool.get();
+        if (orientation == ExifInterface.ORIENTATION_NORMAL) {
+            final Bitmap scaled = pool.scale(bitmap, width, height);
+            if (scaled != bitmap) {
+                pool.put(bitmap);
+            }
+            return scaled;
+        }
+
+        final int orientedWidth = ExifOrientation.getOrientedWidth(orientation, bitmap.getWidth(), bitmap.getHeight());
+        final int orientedHeight = ExifOrientation.getOrientedHeight(orientation, bitmap.getWidth(),
+                bitmap.getHeight());
+        final Matrix matrix = new Matrix();
+        ExifOrientation.getMatrix(orientation, bitmap.getWidth(), bitmap.getHeight(), matrix);
+        matrix.postScale((float) width / orientedWidth, (float) height / orientedHeight);
+        final Bitmap.Config config = bitmap.getConfig() != null ? bitmap.getConfig() : Bitmap.Config.ARGB_8888;
+        final Bitmap oriented = pool.obtain(width, height, config);
+        new Canvas(oriented).drawBitmap(bitmap, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        pool.put(bitmap);
+        return oriented;
+    }
+
+    static BitmapRegionDecoder newDecoder(Context context, Object model) throws IOException {
+        final InputStream inputStream = Utils.openInputStream(context, model);
+        try {
+            return BitmapRegionDecoder.newInstance(inputStream, false);
+        } finally {
+            Utils.closeQuietly(inputStream);
+        }
+    }
+
+    static Rect toSourceRect(RectF normalizedRect, int sourceWidth, int sourceHeight) {
+        final Rect rect = new Rect(
+                Math.min(Math.round(normalizedRect.left * sourceWidth), sourceWidth - 1),
+                Math.min(Math.round(normalizedRect.top * sourceHeight), sourceHeight - 1),
+                Math.round(normalizedRect.right * sourceWidth),
+                Math.round(normalizedRect.bottom * sourceHeight));
+        rect.right = Math.max(rect.right, rect.left + 1);
+        rect.bottom = Math.max(rect.bottom, rect.top + 1);
+        return rect;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.support.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the bitmaps of saved {@link CropView}s alive across a configuration change so that the recreated views can
+ * display them without decoding again. Only the latest {@value #MAX_RETAINED} are kept, and they are dropped when the
+ * app goes to the background and the system asks for memory, see {@link FillViewportCache}.
+ */
+class RetainedBitmaps {
+
+    private static final int MAX_RETAINED = 2;
+
+    private static final Map<Long, Bitmap> BITMAPS = new LinkedHashMap<>();
+    // Not starting from 1 so that ids saved by a previous process never match
+    private static long nextId = System.nanoTime();
+
+    private RetainedBitmaps() {
+    }
+
+    /**
+     * @return Id to {@link #release(long)} <code>bitmap</code> with.
+     */
+    static synchronized long retain(Bitmap bitmap) {
+        final long id = nextId++;
+        BITMAPS.put(id, bitmap);
+        final Iterator<Long> iterator = BITMAPS.keySet().iterator();
+        while (BITMAPS.size() > MAX_RETAINED) {
+            iterator.next();
+            iterator.remove();
+        }
+        return id;
+    }
+
+    /**
+     * @return The bitmap retained under <code>id</code>, if it is still there and usable.
+     */
+    @Nullable
+    static synchronized Bitmap release(long id) {
+        final Bitmap bitmap = BITMAPS.remove(id);
+        return bitmap != null && !bitmap.isRecycled() ? bitmap : null;
+    }
+
+    static synchronized void clear() {
+        BITMAPS.clear();
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Compresses a {@link Bitmap} at the highest quality fitting a byte budget. Qualities are binary searched on a
+ * downsampled trial bitmap, whose sizes are extrapolated to the full bitmap and corrected after each full encode, so
+ * that the full bitmap is only compressed a couple of times.
+ * <p>
+ * The budget is best effort: if even the minimum quality does not fit, the output is encoded at the minimum quality.
+ */
+class SizeTargetedEncoder {
+
+    /**
+     * Trial encodes are downsampled to at most this many pixels.
+     */
+    private static final int TRIAL_MAX_PIXELS = 256 * 256;
+    private static final int MAX_FULL_ENCODES = 3;
+    private static final int MIN_BUFFER_SIZE = 32;
+    private static final int LOSSLESS_QUALITY = 100;
+    /**
+     * {@link Bitmap.CompressFormat#WEBP} is lossless at {@value #LOSSLESS_QUALITY} from Android Q on.
+     */
+    private static final int LOSSLESS_WEBP_API = 29;
+
+    /**
+     * Predicts the encoded size of the full bitmap at a given quality.
+     */
+    interface SizeEstimator {
+
+        long estimate(int quality) throws IOException;
+    }
+
+    private final Bitmap.CompressFormat format;
+    private final int minQuality;
+    private final int maxQuality;
+    private final long maxBytes;
+
+    SizeTargetedEncoder(Bitmap.CompressFormat format, int minQuality, int maxQuality, long maxBytes) {
+        this.format = format;
+        this.minQuality = minQuality;
+        this.maxQuality = maxQuality;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return Whether quality has any effect on the encoded size, PNG is always lossless.
+     */
+    static boolean isLossy(Bitmap.CompressFormat format) {
+        return format != Bitmap.CompressFormat.PNG;
+    }
+
+    /**
+     * Writes <code>bitmap</code> to <code>outputStream</code>.
+     *
+     * @return The quality it was encoded at.
+     */
+    int encode(Bitmap bitmap, OutputStream outputStream) throws IOException {
+        if (!isLossy(format)) {
+            compress(bitmap, maxQuality, outputStream);
+            return maxQuality;
+        }
+
+        final Trial trial = new Trial(bitmap, format);
+        try {
+            // Sized from the first quality searched, it grows if the encode turns out larger
+            final long expected = trial.estimate((minQuality + maxQuality) >>> 1);
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream(
+                    (int) Math.max(MIN_BUFFER_SIZE, Math.min(expected, maxBytes)));
+            if (format == Bitmap.CompressFormat.WEBP && maxQuality == LOSSLESS_QUALITY
+                    && Build.VERSION.SDK_INT >= LOSSLESS_WEBP_API
+                    && trial.estimate(LOSSLESS_QUALITY) <= maxBytes) {
+                // Lossless often beats lossy for flat graphics, keep it when it fits
+                compress(bitmap, LOSSLESS_QUALITY, buffer);
+                if (buffer.size() <= maxBytes) {
+                    buffer.writeTo(outputStream);
+                    return LOSSLESS_QUALITY;
+                }
+            }
+
+            byte[] best = null;
+            int bestQuality = minQuality;
+            int bufferedQuality = -1;
+            int low = minQuality;
+            int high = maxQuality;
+            for (int i = 0; i < MAX_FULL_ENCODES && low <= high; i++) {
+                final int quality = search(low, high, maxBytes, trial);
+                buffer.reset();
+                compress(bitmap, quality, buffer);
+                bufferedQuality = quality;
+                trial.calibrate(quality, buffer.size());
+                if (buffer.size() <= maxBytes) {
+                    best = buffer.toByteArray();
+                    bestQuality = quality;
+                    low = quality + 1;
+                } else {
+                    high = quality - 1;
+                }
+            }
+
+            if (best != null) {
+                outputStream.write(best);
+                return bestQuality;
+            }
+            // Nothing fits, settle for the smallest, which the last full encode may already be
+            if (bufferedQuality != minQuality) {
+                buffer.reset();
+                compress(bitmap, minQuality, buffer);
+            }
+            buffer.writeTo(outputStream);
+            return minQuality;
+        } finally {
+            trial.release();
+        }
+    }
+
+    /**
+     * @return The highest quality within <code>low..high</code> estimated to fit <code>maxBytes</code>, or
+     * <code>low</code> if none is.
+     */
+    static int search(int low, int high, long maxBytes, SizeEstimator estimator) throws IOException {
+        int result = low;
+        while (low <= high) {
+            final int quality = (low + high) >>> 1;
+            if (estimator.estimate(quality) <= maxBytes) {
+                result = quality;
+                low = quality + 1;
+            } else {
+                high = quality - 1;
+            }
+        }
+        return result;
+    }
+
+    private void compress(Bitmap bitmap, int quality, OutputStream outputStream) throws IOException {
+        Utils.checkInterrupted();
+        if (!bitmap.compress(format, quality, outputStream)) {
+            Utils.checkInterrupted();
+            throw new IOException("Unable to compress the cropped bitmap");
+        }
+    }
+
+    /**
+     * Estimates full size from a downsampled copy, scaled by the pixel count ratio then by how far off the latest full
+     * encode was.
+     */
+    private static class Trial implements SizeEstimator {
+
+        private final Bitmap.CompressFormat format;
+        private final Bitmap source;
+        private final Bitmap bitmap;
+        private final float pixelRatio;
+        private final long[] sizes = new long[LOSSLESS_QUALITY + 1];
+        private final CountingOutputStream counter = new CountingOutputStream();
+        private float correction = 1f;
+
+        Trial(Bitmap source, Bitmap.CompressFormat format) {
+            this.format = format;
+            this.source = source;
+            final long pixels = (long) source.getWidth() * source.getHeight();
+            final int sample = (int) Math.ceil(Math.sqrt((double) pixels / TRIAL_MAX_PIXELS));
+            this.bitmap = sample > 1
+                    ? BitmapReusePool.get().scale(source, Math.max(1, source.getWidth() / sample),
+                            Math.max(1, source.getHeight() / sample))
+                    : source;
+            this.pixelRatio = (float) pixels / ((long) bitmap.getWidth() * bitmap.getHeight());
+            Arrays.fill(sizes, -1);
+        }
+
+        @Override
+        public long estimate(int quality) throws IOException {
+            return (long) (trialSize(quality) * pixelRatio * correction);
+        }
+
+        void calibrate(int quality, long fullSize) throws IOException {
+            final long trialSize = trialSize(quality);
+            if (trialSize > 0) {
+                correction = fullSize / (trialSize * pixelRatio);
+            }
+        }
+
+        private long trialSize(int quality) throws IOException {
+            if (sizes[quality] < 0) {
+                Utils.checkInterrupted();
+                counter.count = 0;
+                bitmap.compress(format, quality, counter);
+                sizes[quality] = counter.count;
+            }
+            return sizes[quality];
+        }
+
+        void release() {
+            if (bitmap != source) {
+                BitmapReusePool.get().put(bitmap);
+            }
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,460 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.media.ExifInterface;
+import android.os.Build;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Draws tiles decoded from the original image on top of the display sized bitmap once it is zoomed in past its own
+ * resolution. Tiles form a pyramid of power of 2 sample sizes, only those visible at the current scale and position
+ * are decoded, one at a time on a background thread, and kept while visible in an LRU bounded to a few screens of
+ * tiles.
+ * <p>
+ * Drawing and the tile cache are confined to the main thread, the {@link BitmapRegionDecoder} to the tile thread.
+ */
+class TileRenderer {
+
+    private static final String TAG = "scissors.TileRenderer";
+
+    /**
+     * Decoded tile size, in pixels.
+     */
+    static final int TILE_SIZE = 256;
+    private static final int MAX_PENDING_TILES = 16;
+    /**
+     * Tiles are decoded at up to twice the screen resolution along each axis, those visible at once fit in 4 screens
+     * of tiles at the screen resolution.
+     */
+    private static final int SCREENS_CACHED = 4;
+    private static final int TILE_PRIORITY = 0;
+    /**
+     * Opening and releasing the decoder must not be evicted by tile requests.
+     */
+    private static final int DECODER_PRIORITY = 10;
+
+    private static CropExecutor tileExecutor;
+
+    private final Context context;
+    private final Object model;
+    private final Runnable onTileLoaded;
+    private final TileCache tiles;
+    private final Map<TileKey, Future<Void>> pending = new HashMap<>();
+
+    private final TileKey lookupKey = new TileKey();
+    private final float[] values = new float[9];
+    private final RectF tileRect = new RectF();
+    private final RectF visibleRect = new RectF();
+    private final Matrix sourceTransform = new Matrix();
+    private final Matrix inverseTransform = new Matrix();
+
+    private BitmapRegionDecoder decoder;
+    private volatile int sourceOrientation = ExifInterface.ORIENTATION_NORMAL;
+    private volatile int sourceWidth;
+    private volatile int sourceHeight;
+    private volatile boolean released;
+
+    // Tiles wanted by the latest draw, read by the tile thread to skip stale requests
+    private volatile int visibleSample;
+    private volatile int visibleLeft;
+    private volatile int visibleTop;
+    private volatile int visibleRight;
+    private volatile int visibleBottom;
+
+    // Grid of the tiles visible at the latest draw, main thread only
+    private int gridSample;
+    private int gridFirstColumn;
+    private int gridFirstRow;
+    private int gridLastColumn;
+    private int gridLastRow;
+
+    TileRenderer(Context context, Object model, Runnable onTileLoaded) {
+        this.context = context.getApplicationContext();
+        this.model = model;
+        this.onTileLoaded = onTileLoaded;
+        final DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        this.tiles = new TileCache(computeMaxTiles(metrics.widthPixels, metrics.heightPixels),
+                BitmapReusePool.get());
+        CropExecutor.submit(getTileExecutor(), new OpenTask(), DECODER_PRIORITY, false);
+    }
+
+    Object getModel() {
+        return model;
+    }
+
+    /**
+     * Draws the visible tiles sharper than the bitmap and requests the missing ones.
+     *
+     * @param positioning Transform from the image as displayed, that is with its EXIF orientation applied, to the view.
+     * Only made of scale and translation.
+     * @param imageWidth Width of the displayed bitmap once oriented
+     * @param imageHeight Height of the displayed bitmap once oriented
+     */
+    void draw(Canvas canvas, Matrix positioning, int imageWidth, int imageHeight, int viewWidth, int viewHeight,
+            Paint paint) {
+        final int sourceWidth = this.sourceWidth;
+        final int sourceHeight = this.sourceHeight;
+        if (released || sourceWidth <= 0 || sourceHeight <= 0 || imageWidth <= 0 || imageHeight <= 0) {
+            return;
+        }
+        // The previous frame is rendered by now, tiles it last drew can be reused
+        tiles.recycleRetired();
+        final int orientedWidth = ExifOrientation.getOrientedWidth(sourceOrientation, sourceWidth, sourceHeight);
+        final int orientedHeight = ExifOrientation.getOrientedHeight(sourceOrientation, sourceWidth, sourceHeight);
+
+        positioning.getValues(values);
+        final float bitmapScale = values[Matrix.MSCALE_X];
+        // View pixels per source pixel
+        final int sample = computeSampleSize(bitmapScale * imageWidth / orientedWidth);
+        if (bitmapScale <= 1 || orientedWidth / sample <= imageWidth) {
+            // The bitmap is not magnified, tiles would not show any more detail
+            if (visibleSample != 0) {
+                visibleSample = 0;
+                gridSample = 0;
+                tiles.evictAll();
+            }
+            return;
+        }
+
+        // Tiles are cut from the stored pixels, orient them the same way the loaders do
+        ExifOrientation.getMatrix(sourceOrientation, sourceWidth, sourceHeight, sourceTransform);
+        sourceTransform.postScale((float) imageWidth / orientedWidth, (float) imageHeight / orientedHeight);
+        sourceTransform.postConcat(positioning);
+        if (!sourceTransform.invert(inverseTransform)) {
+            return;
+        }
+        visibleRect.set(0, 0, viewWidth, viewHeight);
+        inverseTransform.mapRect(visibleRect);
+        final int left = clamp((int) Math.floor(visibleRect.left), sourceWidth);
+        final int top = clamp((int) Math.floor(visibleRect.top), sourceHeight);
+        final int right = clamp((int) Math.ceil(visibleRect.right), sourceWidth);
+        final int bottom = clamp((int) Math.ceil(visibleRect.bottom), sourceHeight);
+        visibleLeft = left;
+        visibleTop = top;
+        visibleRight = right;
+        visibleBottom = bottom;
+        visibleSample = sample;
+        if (left >= right || top >= bottom) {
+            return;
+        }
+
+        final int span = TILE_SIZE * sample;
+        final int firstColumn = left / span;
+        final int firstRow = top / span;
+        final int lastColumn = (right - 1) / span;
+        final int lastRow = (bottom - 1) / span;
+        if (sample != gridSample || firstColumn != gridFirstColumn || firstRow != gridFirstRow
+                || lastColumn != gridLastColumn || lastRow != gridLastRow) {
+            // Only tiles of the current grid are kept, others won't be drawn again until panned or zoomed back
+            gridSample = sample;
+            gridFirstColumn = firstColumn;
+            gridFirstRow = firstRow;
+            gridLastColumn = lastColumn;
+            gridLastRow = lastRow;
+            tiles.retainVisible(sample, left, top, right, bottom);
+        }
+
+        canvas.save();
+        canvas.concat(sourceTransform);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                lookupKey.set(sample, column, row);
+                final Bitmap tile = tiles.get(lookupKey);
+                if (tile == null) {
+                    request(lookupKey);
+                    continue;
+                }
+                tileRect.set(column * span, row * span,
+                        Math.min((column + 1) * span, sourceWidth), Math.min((row + 1) * span, sourceHeight));
+                canvas.drawBitmap(tile, null, tileRect, paint);
+            }
+        }
+        canvas.restore();
+    }
+
+    /**
+     * Recycles every tile and the decoder, this renderer draws nothing afterwards.
+     */
+    void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        for (Future<Void> future : pending.values()) {
+            future.cancel(false);
+        }
+        pending.clear();
+        tiles.evictAll();
+        MainThreadExecutor.INSTANCE.execute(new Runnable() {
+            @Override
+            public void run() {
+                tiles.recycleRetired();
+            }
+        });
+        CropExecutor.submit(getTileExecutor(), new Callable<Void>() {
+            @Override
+            public Void call() {
+                if (decoder != null) {
+                    decoder.recycle();
+                    decoder = null;
+                }
+                return null;
+            }
+        }, DECODER_PRIORITY, false);
+    }
+
+    /**
+     * @return Largest power of 2 sample size keeping at least one decoded pixel per view pixel.
+     */
+    static int computeSampleSize(float viewPixelsPerSourcePixel) {
+        int sample = 1;
+        while (sample * 2 * viewPixelsPerSourcePixel <= 1) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    private void request(TileKey key) {
+        final Future<Void> future = pending.get(key);
+        if (future != null && !future.isCancelled()) {
+            return;
+        }
+        final TileKey tileKey = new TileKey();
+        tileKey.set(key.sample, key.column, key.row);
+        pending.put(tileKey, CropExecutor.submit(getTileExecutor(), new TileTask(tileKey), TILE_PRIORITY));
+    }
+
+    /**
+     * @return Maximum number of tiles to cache for a screen of the given size.
+     */
+    static int computeMaxTiles(int screenWidth, int screenHeight) {
+        // A screen wide grid is crossed by one more column and row of tiles when not aligned on it
+        final int columns = (screenWidth + TILE_SIZE - 1) / TILE_SIZE + 1;
+        final int rows = (screenHeight + TILE_SIZE - 1) / TILE_SIZE + 1;
+        return SCREENS_CACHED * columns * rows;
+    }
+
+    private boolean isVisible(TileKey key) {
+        return key.intersects(visibleSample, visibleLeft, visibleTop, visibleRight, visibleBottom);
+    }
+
+    private void deliver(TileKey key, Bitmap tile) {
+        pending.remove(key);
+        if (tile == null) {
+            return;
+        }
+        if (released || !isVisible(key)) {
+            // Never drawn, reusable right away
+            BitmapReusePool.get().put(tile);
+            return;
+        }
+        tiles.put(key, tile);
+        onTileLoaded.run();
+    }
+
+    private void post(final TileKey key, final Bitmap tile) {
+        MainThreadExecutor.INSTANCE.execute(new Runnable() {
+            @Override
+            public void run() {
+                deliver(key, tile);
+            }
+        });
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(value, max));
+    }
+
+    private static synchronized CropExecutor getTileExecutor() {
+        if (tileExecutor == null) {
+            tileExecutor = new CropExecutor(1, MAX_PENDING_TILES);
+        }
+        return tileExecutor;
+    }
+
+    private class OpenTask implements Callable<Void> {
+
+        @Override
+        public Void call() {
+            if (released) {
+                return null;
+            }
+            try {
+                decoder = RegionCropper.newDecoder(context, model);
+            } catch (Exception e) {
+                // Keep drawing the bitmap alone
+                if (BuildConfig.DEBUG) {
+                    Log.w(TAG, "Unable to open " + model + " for tiling", e);
+                }
+                return null;
+            }
+            // Published along with the size, which draw checks first
+            sourceOrientation = ExifOrientation.read(context, model);
+            sourceWidth = decoder.getWidth();
+            sourceHeight = decoder.getHeight();
+            MainThreadExecutor.INSTANCE.execute(onTileLoaded);
+            return null;
+        }
+    }
+
+    private class TileTask implements Callable<Void>, CropExecutor.Rejectable {
+
+        private final TileKey key;
+
+        TileTask(TileKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public void onRejected(RejectedExecutionException e) {
+            // Newer requests fill the queue, forget this one so that the next draw asks again if still visible
+            post(key, null);
+        }
+
+        @Override
+        public Void call() {
+            if (released || decoder == null || !isVisible(key)) {
+                post(key, null);
+                return null;
+            }
+            final int span = TILE_SIZE * key.sample;
+            final Rect region = new Rect(key.column * span, key.row * span,
+                    Math.min((key.column + 1) * span, sourceWidth), Math.min((key.row + 1) * span, sourceHeight));
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = key.sample;
+            final BitmapReusePool pool = BitmapReusePool.get();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                // Tiles mostly have the same size, reuse evicted ones
+                options.outWidth = region.width();
+                options.outHeight = region.height();
+                pool.prepareForDecode(options);
+            }
+            Bitmap tile = null;
+            try {
+                tile = decoder.decodeRegion(region, options);
+            } catch (RuntimeException e) {
+                pool.put(options.inBitmap);
+                if (BuildConfig.DEBUG) {
+                    Log.w(TAG, "Unable to decode tile " + region + " of " + model, e);
+                }
+            }
+            post(key, tile);
+            return null;
+        }
+    }
+
+    /**
+     * Tiles by key, bounded in count. Removed tiles may still be referenced by the frame being rendered, so they only
+     * go back to the pool once the next frame is drawn, see {@link #recycleRetired()}. Main thread only.
+     */
+    static class TileCache extends LruCache<TileKey, Bitmap> {
+
+        private final BitmapReusePool pool;
+        private final List<Bitmap> retired = new ArrayList<>();
+
+        TileCache(int maxTiles, BitmapReusePool pool) {
+            super(maxTiles);
+            this.pool = pool;
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted, TileKey key, Bitmap oldTile, Bitmap newTile) {
+            retired.add(oldTile);
+        }
+
+        /**
+         * Gives tiles removed before the frame about to be drawn back to the pool.
+         */
+        void recycleRetired() {
+            for (int i = 0; i < retired.size(); i++) {
+                pool.put(retired.get(i));
+            }
+            retired.clear();
+        }
+
+        /**
+         * Removes tiles of another sample size or outside the given bounds, in stored pixels.
+         */
+        void retainVisible(int sample, int left, int top, int right, int bottom) {
+            for (TileKey key : snapshot().keySet()) {
+                if (!key.intersects(sample, left, top, right, bottom)) {
+                    remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Identifies a tile by sample size and position in the grid of that sample size. Mutable so that lookups from
+     * {@link #draw} don't allocate, only keys stored in the cache or pending requests must stay untouched.
+     */
+    static class TileKey {
+
+        int sample;
+        int column;
+        int row;
+
+        void set(int sample, int column, int row) {
+            this.sample = sample;
+            this.column = column;
+            this.row = row;
+        }
+
+        boolean intersects(int sample, int left, int top, int right, int bottom) {
+            final int span = TILE_SIZE * this.sample;
+            return this.sample == sample
+                    && column * span < right && (column + 1) * span > left
+                    && row * span < bottom && (row + 1) * span > top;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TileKey)) {
+                return false;
+            }
+            final TileKey other = (TileKey) o;
+            return sample == other.sample && column == other.column && row == other.row;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * sample + column) + row;
+        }
+    }
+}
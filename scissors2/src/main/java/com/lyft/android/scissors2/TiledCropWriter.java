@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.media.ExifInterface;
+import android.os.Build;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+
+/**
+ * Renders and encodes a crop one horizontal band at a time, peak memory is bounded by the band size no matter how
+ * big the output is.
+ */
+class TiledCropWriter implements CropWriter {
+
+    /**
+     * Provides the pixels of the cropped image band by band.
+     */
+    interface BandSource {
+
+        int getWidth();
+
+        int getHeight();
+
+        /**
+         * @return A {@link Bitmap} holding the output rows <code>top..top + rowCount</code> starting at its first row,
+         * only valid until the next call.
+         */
+        Bitmap renderBand(int top, int rowCount) throws IOException;
+
+        void release();
+    }
+
+    private final Callable<BandSource> sourceFactory;
+    private final BandEncoder encoder;
+    private final int bandHeight;
+
+    /**
+     * @param sourceFactory Opens the {@link BandSource}, invoked off the main thread
+     */
+    TiledCropWriter(Callable<BandSource> sourceFactory, BandEncoder encoder, int bandHeight) {
+        Utils.checkArg(bandHeight > 0, "bandHeight must be positive");
+        this.sourceFactory = sourceFactory;
+        this.encoder = encoder;
+        this.bandHeight = bandHeight;
+    }
+
+    @Override
+    public CropResult writeTo(OutputStream outputStream) throws Exception {
+        final BandSource source = sourceFactory.call();
+        boolean ended = false;
+        try {
+            final int width = source.getWidth();
+            final int height = source.getHeight();
+            final int[] pixels = new int[width * Math.min(bandHeight, height)];
+
+            encoder.begin(outputStream, width, height);
+            for (int top = 0; top < height; top += bandHeight) {
+                Utils.checkInterrupted();
+                final int rowCount = Math.min(bandHeight, height - top);
+                final Bitmap band = source.renderBand(top, rowCount);
+                band.getPixels(pixels, 0, width, 0, 0, width, rowCount);
+                encoder.encode(pixels, rowCount);
+            }
+            encoder.end();
+            ended = true;
+            return new CropResult(width, height);
+        } finally {
+            if (!ended) {
+                encoder.abort();
+            }
+            source.release();
+        }
+    }
+
+    /**
+     * @return A streaming encoder for <code>format</code> or <code>null</code> if the format can only be encoded from a
+     * whole {@link Bitmap}.
+     */
+    @Nullable
+    static BandEncoder createEncoder(Bitmap.CompressFormat format, int quality) {
+        if (format == Bitmap.CompressFormat.JPEG) {
+            return new JpegBandEncoder(quality);
+        } else if (format == Bitmap.CompressFormat.PNG) {
+            return new PngBandEncoder();
+        }
+        return null;
+    }
+
+    /**
+     * Draws an already decoded {@link Bitmap} through a crop matrix, one band at a time.
+     */
+    static class BitmapSource implements BandSource {
+
+        private final Bitmap bitmap;
+        private final boolean ownsBitmap;
+        private final Matrix matrix;
+        private final int width;
+        private final int height;
+        private final int bandHeight;
+        private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+        private Bitmap band;
+        private Canvas canvas;
+
+        /**
+         * @param ownsBitmap Whether <code>bitmap</code> is a copy to put back in the {@link BitmapReusePool} once
+         * released
+         */
+        BitmapSource(Bitmap bitmap, boolean ownsBitmap, Matrix matrix, int width, int height, int bandHeight) {
+            this.bitmap = bitmap;
+            this.ownsBitmap = ownsBitmap;
+            this.matrix = matrix;
+            this.width = width;
+            this.height = height;
+            this.bandHeight = bandHeight;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public Bitmap renderBand(int top, int rowCount) {
+            if (band == null) {
+                band = BitmapReusePool.get().obtain(width, Math.min(bandHeight, height), Bitmap.Config.ARGB_8888);
+                canvas = new Canvas(band);
+            } else {
+                band.eraseColor(Color.TRANSPARENT);
+            }
+
+            canvas.save();
+            canvas.translate(0, -top);
+            canvas.drawBitmap(bitmap, matrix, paint);
+            canvas.restore();
+            return band;
+        }
+
+        @Override
+        public void release() {
+            if (band != null) {
+                BitmapReusePool.get().put(band);
+                band = null;
+            }
+            if (ownsBitmap) {
+                BitmapReusePool.get().put(bitmap);
+            }
+        }
+    }
+
+    /**
+     * Decodes each band straight from the original image with a {@link BitmapRegionDecoder}. Images with an EXIF
+     * orientation are decoded from the stored pixels covering the band, then drawn oriented into it.
+     */
+    static class RegionSource implements BandSource {
+
+        private final BitmapRegionDecoder decoder;
+        private final Rect region;
+        private final int orientation;
+        private final Rect bandRect = new Rect();
+        private final BitmapFactory.Options options = new BitmapFactory.Options();
+
+        private Bitmap band;
+        private Matrix orientationMatrix;
+        private Matrix storedMatrix;
+        private RectF storedRect;
+        private Canvas canvas;
+        private Paint paint;
+
+        /**
+         * @param storedRect Rect to crop, normalized over the stored pixels of the image
+         * @param orientation EXIF orientation of the image, see {@link ExifOrientation}
+         */
+        RegionSource(BitmapRegionDecoder decoder, RectF storedRect, int orientation, Bitmap.Config config) {
+            this.decoder = decoder;
+            this.region = RegionCropper.toSourceRect(storedRect, decoder.getWidth(), decoder.getHeight());
+            this.orientation = orientation;
+            options.inPreferredConfig = config;
+            options.inMutable = true;
+        }
+
+        @Override
+        public int getWidth() {
+            return ExifOrientation.getOrientedWidth(orientation, region.width(), region.height());
+        }
+
+        @Override
+        public int getHeight() {
+            return ExifOrientation.getOrientedHeight(orientation, region.width(), region.height());
+        }
+
+        @Override
+        public Bitmap renderBand(int top, int rowCount) throws IOException {
+            if (orientation != ExifInterface.ORIENTATION_NORMAL) {
+                return renderOrientedBand(top, rowCount);
+            }
+            bandRect.set(region.left, region.top + top, region.right, region.top + top + rowCount);
+
+            final boolean reuse = band != null && band.getHeight() == rowCount
+                    && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+            if (!reuse && band != null) {
+                BitmapReusePool.get().put(band);
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                options.inBitmap = reuse ? band : null;
+            }
+
+            band = decoder.decodeRegion(bandRect, options);
+            if (band == null) {
+                throw new IOException("Unable to decode " + bandRect);
+            }
+            return band;
+        }
+
+        private Bitmap renderOrientedBand(int top, int rowCount) throws IOException {
+            if (orientationMatrix == null) {
+                orientationMatrix = new Matrix();
+                ExifOrientation.getMatrix(orientation, region.width(), region.height(), orientationMatrix);
+                storedMatrix = new Matrix();
+                orientationMatrix.invert(storedMatrix);
+                storedRect = new RectF();
+                paint = new Paint();
+            }
+            if (band == null || band.getHeight() != rowCount) {
+                if (band != null) {
+                    BitmapReusePool.get().put(band);
+                }
+                band = BitmapReusePool.get().obtain(getWidth(), rowCount, options.inPreferredConfig);
+                canvas = new Canvas(band);
+            } else {
+                band.eraseColor(Color.TRANSPARENT);
+            }
+
+            // Stored pixels the band rows come from, relative to the region
+            storedRect.set(0, top, getWidth(), top + rowCount);
+            storedMatrix.mapRect(storedRect);
+            bandRect.set(Math.round(storedRect.left), Math.round(storedRect.top), Math.round(storedRect.right),
+                    Math.round(storedRect.bottom));
+            bandRect.offset(region.left, region.top);
+            final Bitmap stored = decoder.decodeRegion(bandRect, options);
+            if (stored == null) {
+                throw new IOException("Unable to decode " + bandRect);
+            }
+
+            canvas.save();
+            canvas.translate(0, -top);
+            canvas.concat(orientationMatrix);
+            canvas.drawBitmap(stored, bandRect.left - region.left, bandRect.top - region.top, paint);
+            canvas.restore();
+            stored.recycle();
+            return band;
+        }
+
+        @Override
+        public void release() {
+            decoder.recycle();
+            if (band != null) {
+                BitmapReusePool.get().put(band);
+                band = null;
+            }
+        }
+    }
+}
@@ -15,14 +15,13 @@
  */
 package com.lyft.android.scissors2;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.AnimatorSet;
 import android.animation.ValueAnimator;
 import android.annotation.TargetApi;
+import android.graphics.Bitmap;
 import android.graphics.Matrix;
 import android.graphics.Rect;
 import android.graphics.RectF;
+import android.media.ExifInterface;
 import android.os.Build;
 import android.support.annotation.IntDef;
 import android.view.GestureDetector;
@@ -56,13 +55,15 @@ class TouchManager {
     private int height;
     private float minimumScale;
     private float maximumScale;
-    private Rect imageBounds;
+    private final Rect imageBounds = new Rect();
     private float aspectRatio;
     private int viewportWidth;
     private int viewportHeight;
     private int viewMinWidth = 100;
     private int viewMinHeight = 100;
-    private RectF frameRect;
+    private final RectF frameRect = new RectF();
+    private final RectF previousFrameRect = new RectF();
+    private final int[] viewportSize = new int[2];
 
     private int bitmapWidth;
     private int bitmapHeight;
@@ -72,10 +73,15 @@ class TouchManager {
 
     private float scale = -1.0f;
     private final TouchPoint position = new TouchPoint();
+    // Scratch point for double tap computations, gestures run on the main thread only
+    private final TouchPoint doubleTapPoint = new TouchPoint();
+    private final TouchPoint flingPoint = new TouchPoint();
+    private final OverScroller scroller;
 
     private final ImageView imageView;
 
-    private final GestureAnimator gestureAnimator = new GestureAnimator(new GestureAnimator.OnAnimationUpdateListener() {
+    private final GestureAnimator gestureAnimator;
+    private final GestureAnimator.OnAnimationUpdateListener animationUpdateListener = new GestureAnimator.OnAnimationUpdateListener() {
         @Override
         public void onAnimationUpdate(@GestureAnimator.AnimationType int animationType, float animationValue) {
             if (animationType == GestureAnimator.ANIMATION_X) {
@@ -96,13 +102,12 @@ class TouchManager {
         public void onAnimationFinished() {
             ensureInsideViewport();
         }
-    });
+    };
 
     private final ScaleGestureDetector.OnScaleGestureListener scaleGestureListener = new ScaleGestureDetector.OnScaleGestureListener() {
         @Override
         public boolean onScale(ScaleGestureDetector detector) {
-            scale = calculateScale(detector.getScaleFactor());
-            setLimits();
+            scaleBy(detector.getScaleFactor());
             return true;
         }
 
@@ -128,81 +133,36 @@ class TouchManager {
                 return true;
             }
 
-            TouchPoint delta = new TouchPoint(-distanceX, -distanceY);
-            position.add(delta);
-            ensureInsideViewport();
+            scrollBy(distanceX, distanceY);
             return true;
         }
 
         @Override
         public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
-            velocityX /= 2;
-            velocityY /= 2;
-
-            if (Math.abs(velocityX) < MINIMUM_FLING_VELOCITY) {
-                velocityX = 0;
-            }
-            if (Math.abs(velocityY) < MINIMUM_FLING_VELOCITY) {
-                velocityY = 0;
-            }
-
-            if (velocityX == 0 && velocityY == 0) {
-                return true;
-            }
-
-            int width = (int) (imageBounds.right * scale);
-            int height = (int) (imageBounds.bottom * scale);
-
-            OverScroller scroller = new OverScroller(imageView.getContext());
-            scroller.fling((int) e1.getX(), (int) e1.getY(), (int) velocityX, (int) velocityY, -width, width, -height, height);
-
-            TouchPoint target = new TouchPoint(scroller.getFinalX(), scroller.getFinalY());
-            float x = velocityX == 0 ? position.getX() : target.getX() * scale;
-            float y = velocityY == 0 ? position.getY() : target.getY() * scale;
-
-            gestureAnimator.animateTranslation(position.getX(), x, position.getY(), y);
-
+            fling(e1.getX(), e1.getY(), velocityX, velocityY);
             return true;
         }
 
         @Override
         public boolean onDoubleTap(MotionEvent e) {
-            final float fromX, toX, fromY, toY, targetScale;
-
-            TouchPoint eventPoint = new TouchPoint(e.getX(), e.getY());
-            if (scale == minimumScale) {
-                targetScale = maximumScale / 2;
-                TouchPoint translatedTargetPosition = mapTouchCoordinateToMatrix(eventPoint, targetScale);
-                TouchPoint centeredTargetPosition = centerCoordinates(translatedTargetPosition);
-                fromX = position.getX();
-                toX = centeredTargetPosition.getX();
-                fromY = position.getY();
-                toY = centeredTargetPosition.getY();
-            } else {
-                targetScale = minimumScale;
-                TouchPoint translatedPosition = mapTouchCoordinateToMatrix(eventPoint, scale);
-                TouchPoint centeredTargetPosition = centerCoordinates(translatedPosition);
-                fromX = centeredTargetPosition.getX();
-                toX = 0;
-                fromY = centeredTargetPosition.getY();
-                toY = 0;
-            }
-
-            gestureAnimator.animateDoubleTap(fromX, toX, fromY, toY, scale, targetScale);
+            doubleTap(e.getX(), e.getY());
             return true;
         }
-
-        private TouchPoint centerCoordinates(TouchPoint coordinates) {
-            float x = coordinates.getX() + (imageBounds.right / 2);
-            float y = coordinates.getY() + (imageBounds.bottom / 2);
-            return new TouchPoint(x, y);
-        }
     };
 
     public TouchManager(final ImageView imageView, final CropViewConfig cropViewConfig) {
+        this(imageView, cropViewConfig, ValueAnimator.ofFloat(0f, 1f));
+    }
+
+    /**
+     * @param gestureAnimation Runs flings and double taps, animating from 0 to 1.
+     */
+    TouchManager(ImageView imageView, CropViewConfig cropViewConfig, ValueAnimator gestureAnimation) {
         this.imageView = imageView;
+        gestureAnimator = new GestureAnimator(gestureAnimation, animationUpdateListener);
         scaleGestureDetector = new ScaleGestureDetector(imageView.getContext(), scaleGestureListener);
         gestureDetector = new GestureDetector(imageView.getContext(), gestureListener);
+        scroller = new OverScroller(imageView.getContext());
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
             scaleGestureDetector.setQuickScaleEnabled(true);
@@ -214,8 +174,26 @@ class TouchManager {
         maximumScale = cropViewConfig.getMaxScale();
     }
 
+    /**
+     * Handles a touch event.
+     *
+     * @param dirty Receives the area of the view affected by the event, the whole view when the image moved or only
+     * the union of the previous and new frame rect when a handle was dragged. Handles and overlay are drawn on the frame
+     * edges so callers should outset it by their size.
+     * @return <code>true</code> if the position, scale or frame rect changed and the view needs to be redrawn.
+     */
     @TargetApi(Build.VERSION_CODES.FROYO)
-    public void onEvent(MotionEvent event) {
+    public boolean onEvent(MotionEvent event, Rect dirty) {
+        if (frameRect.isEmpty()) {
+            dirty.setEmpty();
+            return false;
+        }
+
+        final float previousX = position.getX();
+        final float previousY = position.getY();
+        final float previousScale = scale;
+        previousFrameRect.set(frameRect);
+
         switch (event.getAction()) {
             case MotionEvent.ACTION_DOWN:
                 onDown(event);
@@ -228,6 +206,17 @@ class TouchManager {
             ensureInsideViewport();
         }
 
+        if (previousX != position.getX() || previousY != position.getY() || previousScale != scale) {
+            dirty.set(0, 0, width, height);
+            return true;
+        }
+        if (!previousFrameRect.equals(frameRect)) {
+            previousFrameRect.union(frameRect);
+            previousFrameRect.roundOut(dirty);
+            return true;
+        }
+        dirty.setEmpty();
+        return false;
     }
 
     private void onDown(MotionEvent e) {
@@ -271,7 +260,6 @@ class TouchManager {
                 setLimits();
                 break;
         }
-        imageView.invalidate();
         mLastX = e.getX();
         mLastY = e.getY();
     }
@@ -329,12 +317,100 @@ class TouchManager {
         mTouchArea = TouchArea.OTHER;
     }
 
+    void scrollBy(float distanceX, float distanceY) {
+        position.set(position.getX() - distanceX, position.getY() - distanceY);
+        ensureInsideViewport();
+    }
+
+    void scaleBy(float scaleFactor) {
+        scale = calculateScale(scaleFactor);
+        setLimits();
+    }
+
+    /**
+     * Animates a fling started at <code>startX</code>, <code>startY</code> in view coordinates.
+     */
+    void fling(float startX, float startY, float velocityX, float velocityY) {
+        velocityX /= 2;
+        velocityY /= 2;
+
+        if (Math.abs(velocityX) < MINIMUM_FLING_VELOCITY) {
+            velocityX = 0;
+        }
+        if (Math.abs(velocityY) < MINIMUM_FLING_VELOCITY) {
+            velocityY = 0;
+        }
+
+        if (velocityX == 0 && velocityY == 0) {
+            return;
+        }
+
+        int width = (int) (imageBounds.right * scale);
+        int height = (int) (imageBounds.bottom * scale);
+
+        scroller.forceFinished(true);
+        scroller.fling((int) startX, (int) startY, (int) velocityX, (int) velocityY, -width, width, -height, height);
+        final TouchPoint end = flingPoint.set(scroller.getFinalX(), scroller.getFinalY());
+
+        float x = velocityX == 0 ? position.getX() : end.getX() * scale;
+        float y = velocityY == 0 ? position.getY() : end.getY() * scale;
+
+        gestureAnimator.animateTranslation(position.getX(), x, position.getY(), y);
+    }
+
+    /**
+     * Animates zooming in on <code>x</code>, <code>y</code> in view coordinates, or back out when zoomed in.
+     */
+    void doubleTap(float x, float y) {
+        final float fromX, toX, fromY, toY, targetScale;
+
+        final TouchPoint point = doubleTapPoint.set(x, y);
+        if (scale == minimumScale) {
+            targetScale = maximumScale / 2;
+            centerCoordinates(mapTouchCoordinateToMatrix(point, targetScale));
+            fromX = position.getX();
+            toX = point.getX();
+            fromY = position.getY();
+            toY = point.getY();
+        } else {
+            targetScale = minimumScale;
+            centerCoordinates(mapTouchCoordinateToMatrix(point, scale));
+            fromX = point.getX();
+            toX = 0;
+            fromY = point.getY();
+            toY = 0;
+        }
+
+        gestureAnimator.animateDoubleTap(fromX, toX, fromY, toY, scale, targetScale);
+    }
+
+    private TouchPoint centerCoordinates(TouchPoint coordinates) {
+        float x = coordinates.getX() + (imageBounds.right / 2);
+        float y = coordinates.getY() + (imageBounds.bottom / 2);
+        return coordinates.set(x, y);
+    }
+
     public void applyPositioningAndScale(Matrix matrix) {
         matrix.postTranslate(-bitmapWidth / 2.0f, -bitmapHeight / 2.0f);
         matrix.postScale(scale, scale);
         matrix.postTranslate(position.getX(), position.getY());
     }
 
+    /**
+     * Captures the current positioning, scale and frame rect so that it can be used from another thread.
+     */
+    public CropState snapshot(Bitmap bitmap) {
+        return snapshot(bitmap, ExifInterface.ORIENTATION_NORMAL);
+    }
+
+    /**
+     * @param orientation EXIF orientation <code>bitmap</code> is displayed with, this manager works with its oriented
+     * size
+     */
+    public CropState snapshot(Bitmap bitmap, int orientation) {
+        return new CropState(bitmap, orientation, scale, position.getX(), position.getY(), frameRect);
+    }
+
     public void applyScale(Matrix matrix, float scale) {
         this.scale = scale;
         matrix.postScale(scale, scale);
@@ -342,13 +418,14 @@ class TouchManager {
 
     public void resetFor(int bitmapWidth, int bitmapHeight, int availableWidth, int availableHeight) {
         aspectRatio = cropViewConfig.getViewportRatio();
-        imageBounds = new Rect(0, 0, availableWidth / 2, availableHeight / 2);
-        setViewport(bitmapWidth, bitmapHeight, availableWidth, availableHeight);
+        imageBounds.set(0, 0, availableWidth / 2, availableHeight / 2);
 
         this.width = availableWidth;
         this.height = availableHeight;
         this.bitmapWidth = bitmapWidth;
         this.bitmapHeight = bitmapHeight;
+        // The frame rect depends on the new view width
+        setViewport(bitmapWidth, bitmapHeight, availableWidth, availableHeight);
         if (bitmapWidth > 0 && bitmapHeight > 0) {
             setMinimumScale();
             setLimits();
@@ -359,8 +436,12 @@ class TouchManager {
 
     public void changeFor(int bitmapWidth, int bitmapHeight, int availableWidth, int availableHeight) {
         aspectRatio = cropViewConfig.getViewportRatio();
-        imageBounds = new Rect(0, 0, availableWidth / 2, availableHeight / 2);
+        imageBounds.set(0, 0, availableWidth / 2, availableHeight / 2);
 
+        if (this.bitmapWidth > 0 && bitmapWidth > 0) {
+            // Keep the image at the same on-screen size when a bitmap is swapped for a larger or smaller one
+            scale *= (float) this.bitmapWidth / bitmapWidth;
+        }
         this.width = availableWidth;
         this.height = availableHeight;
         this.bitmapWidth = bitmapWidth;
@@ -389,6 +470,9 @@ class TouchManager {
         cropViewConfig.setViewportRatio(ratio);
     }
 
+    /**
+     * Maps <code>coordinate</code> in place.
+     */
     private TouchPoint mapTouchCoordinateToMatrix(TouchPoint coordinate, float targetScale) {
         float width = bitmapWidth * targetScale;
         float height = bitmapHeight * targetScale;
@@ -406,60 +490,33 @@ class TouchManager {
             newY = y0 - newY;
         }
 
-        return new TouchPoint(newX, newY);
+        return coordinate.set(newX, newY);
     }
 
     private void ensureInsideViewport() {
-        if (imageBounds == null) {
+        if (imageBounds.isEmpty()) {
             return;
         }
 
-        float newY = position.getY();
-        int bottom = imageBounds.bottom;
         int diffVerticalCenter = (int) (height / 2 - (frameRect.top + getViewportHeight() / 2));
-        if (bottom - newY >= verticalLimit + diffVerticalCenter) { //bottom
-            newY = bottom - (verticalLimit + diffVerticalCenter);
-        } else if (newY - bottom >= verticalLimit - diffVerticalCenter) { //top
-            newY = bottom + (verticalLimit - diffVerticalCenter);
-        }
-
-        float newX = position.getX();
-        int right = imageBounds.right;
         int diffHorizontalCenter = (int) (width / 2 - (frameRect.left + getViewportWidth() / 2));
-        if (newX <= right - (horizontalLimit + diffHorizontalCenter)) { //right
-            newX = right - (horizontalLimit + diffHorizontalCenter);
-        } else if (newX > right + (horizontalLimit - diffHorizontalCenter)) { //left
-            newX = right + (horizontalLimit - diffHorizontalCenter);
-        }
-
-        position.set(newX, newY);
+        position.set(
+                CropGeometry.clampPosition(position.getX(), imageBounds.right, horizontalLimit, diffHorizontalCenter),
+                CropGeometry.clampPosition(position.getY(), imageBounds.bottom, verticalLimit, diffVerticalCenter));
     }
 
     private void setViewport(int bitmapWidth, int bitmapHeight, int availableWidth, int availableHeight) {
-        final float imageAspect = (float) bitmapWidth / bitmapHeight;
-        final float viewAspect = (float) availableWidth / availableHeight;
-
-        float ratio = cropViewConfig.getViewportRatio();
-        if (Float.compare(0f, ratio) == 0) {
-            // viewport ratio of 0 means match native ratio of bitmap
-            ratio = imageAspect;
-        }
-
-        if (ratio > viewAspect) {
-            // viewport is wider than view
-            viewportWidth = availableWidth - cropViewConfig.getViewportOverlayPadding() * 2;
-            viewportHeight = (int) (viewportWidth * (1 / ratio));
-        } else {
-            // viewport is taller than view
-            viewportHeight = availableHeight - cropViewConfig.getViewportOverlayPadding() * 2;
-            viewportWidth = (int) (viewportHeight * ratio);
-        }
+        // viewport ratio of 0 means match native ratio of bitmap
+        CropGeometry.computeViewportSize(bitmapWidth, bitmapHeight, availableWidth, availableHeight,
+                cropViewConfig.getViewportRatio(), cropViewConfig.getViewportOverlayPadding(), viewportSize);
+        viewportWidth = viewportSize[0];
+        viewportHeight = viewportSize[1];
         calFrameRect();
     }
 
     private void setLimits() {
-        horizontalLimit = computeLimit((int) (bitmapWidth * scale), getViewportWidth());
-        verticalLimit = computeLimit((int) (bitmapHeight * scale), getViewportHeight());
+        horizontalLimit = CropGeometry.computeLimit((int) (bitmapWidth * scale), getViewportWidth());
+        verticalLimit = CropGeometry.computeLimit((int) (bitmapHeight * scale), getViewportHeight());
     }
 
     private void resetPosition() {
@@ -467,18 +524,12 @@ class TouchManager {
     }
 
     private void setMinimumScale() {
-        final float fw = (float) viewportWidth / bitmapWidth;
-        final float fh = (float) viewportHeight / bitmapHeight;
-        minimumScale = Math.max(fw, fh);
+        minimumScale = CropGeometry.computeMinimumScale(bitmapWidth, bitmapHeight, viewportWidth, viewportHeight);
         scale = Math.max(scale, minimumScale);
     }
 
     private float calculateScale(float newScaleDelta) {
-        return Math.max(minimumScale, Math.min(scale * newScaleDelta, maximumScale));
-    }
-
-    private static int computeLimit(int bitmapSize, int viewportSize) {
-        return (bitmapSize - viewportSize) / 2;
+        return CropGeometry.clampScale(scale * newScaleDelta, minimumScale, maximumScale);
     }
 
     private static boolean isUpAction(int actionMasked) {
@@ -555,7 +606,7 @@ class TouchManager {
         final int right = width - left;
         final int top = 0;
         final int bottom = viewportHeight;
-        frameRect = new RectF(left, top, right, bottom);
+        frameRect.set(left, top, right, bottom);
     }
 
     public void setFrameRectSize(int width, int height) {
@@ -563,17 +614,17 @@ class TouchManager {
         final int right = width - left;
         final int top = 0;
         final int bottom = height;
-        frameRect = new RectF(left, top, right, bottom);
+        frameRect.set(left, top, right, bottom);
     }
 
     public void setMinFrameRect() {
-        frameRect = new RectF(0, 0, viewMinWidth, viewMinHeight);
+        frameRect.set(0, 0, viewMinWidth, viewMinHeight);
         setLimits();
         ensureInsideViewport();
     }
 
     public void setMaxFrameRect() {
-        frameRect = new RectF(0, 0, viewportWidth, viewportHeight);
+        frameRect.set(0, 0, viewportWidth, viewportHeight);
         setLimits();
         ensureInsideViewport();
     }
@@ -583,6 +634,47 @@ class TouchManager {
         return frameRect;
     }
 
+    /**
+     * @return Width of the frame rect relative to the largest one, so that it can be restored on a view of another size.
+     */
+    float getFrameWidthRatio() {
+        return viewportWidth > 0 ? frameRect.width() / viewportWidth : 1f;
+    }
+
+    /**
+     * @see #getFrameWidthRatio()
+     */
+    float getFrameHeightRatio() {
+        return viewportHeight > 0 ? frameRect.height() / viewportHeight : 1f;
+    }
+
+    /**
+     * Resizes the frame rect relative to the largest one, then positions and scales the bitmap so that the frame shows
+     * <code>normalizedCropRect</code> as closely as the scale limits allow. Only applies once a bitmap and a size are
+     * set.
+     */
+    void restore(float frameWidthRatio, float frameHeightRatio, RectF normalizedCropRect) {
+        if (bitmapWidth <= 0 || bitmapHeight <= 0 || width <= 0 || height <= 0) {
+            return;
+        }
+        frameRect.set(0, 0,
+                Math.min(Math.max(Math.round(frameWidthRatio * viewportWidth), viewMinWidth), width),
+                Math.min(Math.max(Math.round(frameHeightRatio * viewportHeight), viewMinHeight), height));
+
+        final float cropWidth = normalizedCropRect.width() * bitmapWidth;
+        final float cropHeight = normalizedCropRect.height() * bitmapHeight;
+        if (cropWidth > 0 && cropHeight > 0) {
+            scale = CropGeometry.clampScale(
+                    CropGeometry.computeScaleToCover(frameRect.width(), frameRect.height(), cropWidth, cropHeight),
+                    minimumScale, maximumScale);
+            position.set(
+                    CropGeometry.computePosition(frameRect.left, normalizedCropRect.left, scale, bitmapWidth),
+                    CropGeometry.computePosition(frameRect.top, normalizedCropRect.top, scale, bitmapHeight));
+        }
+        setLimits();
+        ensureInsideViewport();
+    }
+
     private float sq(float value) {
         return value * value;
     }
@@ -603,85 +695,76 @@ class TouchManager {
             void onAnimationFinished();
         }
 
-        private ValueAnimator xAnimator;
-        private ValueAnimator yAnimator;
-        private ValueAnimator scaleAnimator;
+        // A single animator over a fraction, created once: unlike an AnimatorSet or setFloatValues(), gestures then
+        // restart it without allocating
+        private final ValueAnimator animator;
+        private final Interpolator translationInterpolator = new DecelerateInterpolator();
+        private final Interpolator doubleTapInterpolator = new AccelerateDecelerateInterpolator();
 
-        private AnimatorSet animator;
+        private float fromX, toX, fromY, toY, fromScale, toScale;
+        private boolean animatingScale;
 
         private final OnAnimationUpdateListener listener;
 
-        public GestureAnimator(OnAnimationUpdateListener listener) {
+        public GestureAnimator(ValueAnimator animator, OnAnimationUpdateListener listener) {
+            this.animator = animator;
             this.listener = listener;
+            animator.addUpdateListener(updateListener);
         }
 
+        // Ends are reported from here rather than from an AnimatorListener, which the framework copies on every start
         final ValueAnimator.AnimatorUpdateListener updateListener = new ValueAnimator.AnimatorUpdateListener() {
             @Override
             public void onAnimationUpdate(ValueAnimator animation) {
-                float val = ((float) animation.getAnimatedValue());
-
-                if (animation == xAnimator) {
-                    listener.onAnimationUpdate(ANIMATION_X, val);
-                } else if (animation == yAnimator) {
-                    listener.onAnimationUpdate(ANIMATION_Y, val);
-                } else if (animation == scaleAnimator) {
-                    listener.onAnimationUpdate(ANIMATION_SCALE, val);
+                final float fraction = animation.getAnimatedFraction();
+
+                if (animatingScale) {
+                    listener.onAnimationUpdate(ANIMATION_SCALE, interpolate(fromScale, toScale, fraction));
                 }
-            }
-        };
+                listener.onAnimationUpdate(ANIMATION_X, interpolate(fromX, toX, fraction));
+                listener.onAnimationUpdate(ANIMATION_Y, interpolate(fromY, toY, fraction));
 
-        private final Animator.AnimatorListener animatorListener = new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                if (xAnimator != null) xAnimator.removeUpdateListener(updateListener);
-                if (yAnimator != null) yAnimator.removeUpdateListener(updateListener);
-                if (scaleAnimator != null) scaleAnimator.removeUpdateListener(updateListener);
-                animator.removeAllListeners();
-                listener.onAnimationFinished();
+                if (fraction >= 1f) {
+                    listener.onAnimationFinished();
+                }
             }
         };
 
         public void animateTranslation(float fromX, float toX, float fromY, float toY) {
-            if (animator != null) {
-                animator.cancel();
-            }
-
-            xAnimator = ValueAnimator.ofFloat(fromX, toX);
-            yAnimator = ValueAnimator.ofFloat(fromY, toY);
-            scaleAnimator = null;
+            animator.cancel();
 
-            xAnimator.addUpdateListener(updateListener);
-            yAnimator.addUpdateListener(updateListener);
+            setTranslation(fromX, toX, fromY, toY);
+            animatingScale = false;
 
-            animate(new DecelerateInterpolator(), 250, xAnimator, yAnimator);
+            start(translationInterpolator, 250);
         }
 
         public void animateDoubleTap(float fromX, float toX, float fromY, float toY, float fromScale, float toScale) {
-            if (animator != null) {
-                animator.cancel();
-            }
+            animator.cancel();
 
-            xAnimator = ValueAnimator.ofFloat(fromX, toX);
-            yAnimator = ValueAnimator.ofFloat(fromY, toY);
-            scaleAnimator = ValueAnimator.ofFloat(fromScale, toScale);
+            setTranslation(fromX, toX, fromY, toY);
+            this.fromScale = fromScale;
+            this.toScale = toScale;
+            animatingScale = true;
 
-            xAnimator.addUpdateListener(updateListener);
-            yAnimator.addUpdateListener(updateListener);
-            scaleAnimator.addUpdateListener(updateListener);
+            start(doubleTapInterpolator, 500);
+        }
 
-            animate(new AccelerateDecelerateInterpolator(), 500, scaleAnimator, xAnimator, yAnimator);
+        private void setTranslation(float fromX, float toX, float fromY, float toY) {
+            this.fromX = fromX;
+            this.toX = toX;
+            this.fromY = fromY;
+            this.toY = toY;
         }
 
-        private void animate(Interpolator interpolator, long duration, ValueAnimator first, ValueAnimator... animators) {
-            animator = new AnimatorSet();
-            animator.setDuration(duration);
+        private void start(Interpolator interpolator, long duration) {
             animator.setInterpolator(interpolator);
-            animator.addListener(animatorListener);
-            AnimatorSet.Builder builder = animator.play(first);
-            for (ValueAnimator valueAnimator : animators) {
-                builder.with(valueAnimator);
-            }
+            animator.setDuration(duration);
             animator.start();
         }
+
+        private static float interpolate(float from, float to, float fraction) {
+            return from + (to - from) * fraction;
+        }
     }
 }
@@ -6,7 +6,11 @@ import android.widget.ImageView;
 
 import com.nostra13.universalimageloader.core.DisplayImageOptions;
 import com.nostra13.universalimageloader.core.ImageLoader;
+import com.nostra13.universalimageloader.core.assist.ImageScaleType;
+import com.nostra13.universalimageloader.core.assist.ViewScaleType;
 import com.nostra13.universalimageloader.core.display.BitmapDisplayer;
+import com.nostra13.universalimageloader.core.imageaware.ImageAware;
+import com.nostra13.universalimageloader.core.imageaware.ImageViewAware;
 
 /**
  * A {@link BitmapLoader} with transformation for {@link ImageLoader} image library.
@@ -18,10 +22,23 @@ public class UILBitmapLoader implements BitmapLoader {
 
     private final ImageLoader imageLoader;
     private final BitmapDisplayer bitmapDisplayer;
+    private final int viewportWidth;
+    private final int viewportHeight;
 
     public UILBitmapLoader(ImageLoader imageLoader, BitmapDisplayer bitmapDisplayer) {
+        this(imageLoader, bitmapDisplayer, 0, 0);
+    }
+
+    /**
+     * @param viewportWidth Width images are scaled to while decoding, along with <code>viewportHeight</code>, so that
+     * <code>bitmapDisplayer</code> has little left to do
+     */
+    public UILBitmapLoader(ImageLoader imageLoader, BitmapDisplayer bitmapDisplayer, int viewportWidth,
+            int viewportHeight) {
         this.imageLoader = imageLoader;
         this.bitmapDisplayer = bitmapDisplayer;
+        this.viewportWidth = viewportWidth;
+        this.viewportHeight = viewportHeight;
     }
 
     public static BitmapLoader createUsing(CropView cropView) {
@@ -29,22 +46,59 @@ public class UILBitmapLoader implements BitmapLoader {
     }
 
     public static BitmapLoader createUsing(CropView cropView, ImageLoader imageLoader) {
-        return new UILBitmapLoader(imageLoader, UILFillViewportDisplayer.createUsing(cropView.getViewportWidth(), cropView.getViewportHeight()));
+        final int viewportWidth = cropView.getViewportWidth();
+        final int viewportHeight = cropView.getViewportHeight();
+        return new UILBitmapLoader(imageLoader, UILFillViewportDisplayer.createUsing(viewportWidth, viewportHeight),
+                viewportWidth, viewportHeight);
     }
 
     @Override
     public void load(@Nullable Object model, @NonNull ImageView view) {
+        final boolean sized = viewportWidth > 0 && viewportHeight > 0;
         final DisplayImageOptions options = new DisplayImageOptions.Builder()
                 .cacheInMemory(false)
                 .cacheOnDisk(false)
+                .imageScaleType(sized ? ImageScaleType.EXACTLY : ImageScaleType.IN_SAMPLE_POWER_OF_2)
                 .displayer(bitmapDisplayer)
                 .build();
 
         if (model instanceof String || model == null) {
-            imageLoader.displayImage((String) model, view, options);
+            final ImageAware imageAware = sized
+                    ? new ViewportAware(view, viewportWidth, viewportHeight) : new ImageViewAware(view);
+            imageLoader.displayImage((String) model, imageAware, options);
         } else {
             throw new IllegalArgumentException("Unsupported model " + model);
         }
 
     }
+
+    /**
+     * Makes UIL scale images down to exactly fill the viewport while decoding, rather than to fit the view.
+     */
+    private static class ViewportAware extends ImageViewAware {
+
+        private final int width;
+        private final int height;
+
+        ViewportAware(ImageView imageView, int width, int height) {
+            super(imageView);
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public ViewScaleType getScaleType() {
+            return ViewScaleType.CROP;
+        }
+    }
 }
@@ -26,11 +26,13 @@ class UILFillViewportDisplayer implements BitmapDisplayer {
         int sourceHeight = source.getHeight();
 
         Rect target = CropViewExtensions.computeTargetSize(sourceWidth, sourceHeight, viewportWidth, viewportHeight);
-        final Bitmap result = Bitmap.createScaledBitmap(
-                source,
-                target.width(),
-                target.height(),
-                true);
+        if (CropViewExtensions.isTargetSize(sourceWidth, sourceHeight, target)) {
+            // Already scaled while decoding
+            imageAware.setImageBitmap(source);
+            return;
+        }
+
+        final Bitmap result = BitmapReusePool.get().scale(source, target.width(), target.height());
 
         if (result != source) {
             source.recycle();
@@ -15,19 +15,28 @@
  */
 package com.lyft.android.scissors2;
 
+import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.Build;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.Callable;
 
 class Utils {
 
@@ -55,64 +64,112 @@ class Utils {
         return bitmap;
     }
 
-    private final static ExecutorService EXECUTOR_SERVICE = Executors.newCachedThreadPool();
     private static final String TAG = "scissors.Utils";
 
-    public static Future<Void> flushToFile(final Bitmap bitmap,
-            final Bitmap.CompressFormat format,
-            final int quality,
-            final File file) {
+    public static Callable<CropResult> flushToFile(final CropWriter writer, final File file) {
 
-        return EXECUTOR_SERVICE.submit(new Runnable() {
+        return new Callable<CropResult>() {
             @Override
-            public void run() {
-                OutputStream outputStream = null;
+            public CropResult call() throws Exception {
+                InterruptibleOutputStream outputStream = null;
 
                 try {
                     file.getParentFile().mkdirs();
-                    outputStream = new FileOutputStream(file);
-                    bitmap.compress(format, quality, outputStream);
+                    outputStream = new InterruptibleOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+                    final long start = SystemClock.elapsedRealtime();
+                    final CropResult result = writer.writeTo(outputStream);
                     outputStream.flush();
+                    return result.withOutput(file, outputStream.getByteCount(), SystemClock.elapsedRealtime() - start);
                 } catch (final Throwable throwable) {
-                    if (BuildConfig.DEBUG) {
-                        Log.e(TAG, "Error attempting to save bitmap.", throwable);
-                    }
+                    // Do not leave a partially written file behind
+                    closeQuietly(outputStream);
+                    file.delete();
+                    logFailure(throwable);
+                    throw throwable;
                 } finally {
                     closeQuietly(outputStream);
                 }
             }
-        }, null);
+        };
     }
 
-    public static Future<Void> flushToStream(final Bitmap bitmap,
-            final Bitmap.CompressFormat format,
-            final int quality,
+    public static Callable<CropResult> flushToStream(final CropWriter writer,
             final OutputStream outputStream,
             final boolean closeWhenDone) {
 
-        return EXECUTOR_SERVICE.submit(new Runnable() {
+        return new Callable<CropResult>() {
             @Override
-            public void run() {
+            public CropResult call() throws Exception {
                 try {
-                    bitmap.compress(format, quality, outputStream);
-                    outputStream.flush();
+                    final InterruptibleOutputStream interruptibleStream = new InterruptibleOutputStream(outputStream);
+                    final long start = SystemClock.elapsedRealtime();
+                    final CropResult result = writer.writeTo(interruptibleStream);
+                    interruptibleStream.flush();
+                    return result.withOutput(null, interruptibleStream.getByteCount(),
+                            SystemClock.elapsedRealtime() - start);
                 } catch (final Throwable throwable) {
-                    if (BuildConfig.DEBUG) {
-                        Log.e(TAG, "Error attempting to save bitmap.", throwable);
-                    }
+                    logFailure(throwable);
+                    throw throwable;
                 } finally {
                     if (closeWhenDone) {
                         closeQuietly(outputStream);
                     }
                 }
             }
-        }, null);
+        };
+    }
+
+    /**
+     * Cancelling a crop interrupts the thread running it, long running steps should call this in between units of work.
+     */
+    static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Crop cancelled");
+        }
+    }
+
+    private static void logFailure(Throwable throwable) {
+        if (BuildConfig.DEBUG && !(throwable instanceof InterruptedIOException)) {
+            Log.e(TAG, "Error attempting to save bitmap.", throwable);
+        }
+    }
+
+    /**
+     * Opens a stream over the raw bytes of a model, supported models are {@link Uri}, {@link File}, {@link String} paths
+     * or uris and {@link Integer} resource ids.
+     */
+    static InputStream openInputStream(Context context, Object model) throws IOException {
+        if (model instanceof Uri) {
+            final InputStream inputStream = context.getContentResolver().openInputStream((Uri) model);
+            if (inputStream == null) {
+                throw new FileNotFoundException("Unable to open " + model);
+            }
+            return inputStream;
+        } else if (model instanceof File) {
+            return new FileInputStream((File) model);
+        } else if (model instanceof String) {
+            final Uri uri = Uri.parse((String) model);
+            return uri.getScheme() == null
+                    ? new FileInputStream((String) model)
+                    : openInputStream(context, uri);
+        } else if (model instanceof Integer) {
+            return context.getResources().openRawResource((Integer) model);
+        }
+        throw new IllegalArgumentException("Unsupported model " + model);
+    }
+
+    /**
+     * @return <code>true</code> if <code>config</code> is {@link Bitmap.Config#HARDWARE}, which can't be drawn into nor
+     * drawn with a software {@link Canvas}.
+     */
+    static boolean isHardware(@Nullable Bitmap.Config config) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && config == Bitmap.Config.HARDWARE;
     }
 
-    private static void closeQuietly(@Nullable OutputStream outputStream) {
+    static void closeQuietly(@Nullable Closeable closeable) {
         try {
-            if (outputStream != null) {
-                outputStream.close();
+            if (closeable != null) {
+                closeable.close();
             }
         } catch (Exception e) {
             Log.e(TAG, "Error attempting to close stream.", e);
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.support.annotation.ColorInt;
+
+/**
+ * Dims everything outside of the viewport in a single fill: the overlay is one even-odd {@link Path} made of the view
+ * bounds and the viewport shape, so the viewport itself is left as a hole. The path is only rebuilt when the geometry
+ * changes, panning or zooming the image reuses it as is.
+ */
+class ViewportOverlay {
+
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path path = new Path();
+    private final RectF pathFrame = new RectF();
+
+    private int pathWidth;
+    private int pathHeight;
+    @CropView.Shape
+    private int pathShape;
+    private boolean pathValid;
+
+    ViewportOverlay() {
+        path.setFillType(Path.FillType.EVEN_ODD);
+    }
+
+    void setColor(@ColorInt int color) {
+        paint.setColor(color);
+    }
+
+    void draw(Canvas canvas, RectF frameRect, int width, int height, @CropView.Shape int shape) {
+        if (!pathValid || width != pathWidth || height != pathHeight || shape != pathShape
+                || !frameRect.equals(pathFrame)) {
+            buildPath(frameRect, width, height, shape);
+        }
+        canvas.drawPath(path, paint);
+    }
+
+    private void buildPath(RectF frameRect, int width, int height, @CropView.Shape int shape) {
+        pathFrame.set(frameRect);
+        pathWidth = width;
+        pathHeight = height;
+        pathShape = shape;
+        pathValid = true;
+
+        path.rewind();
+        path.addRect(0, 0, width, height, Path.Direction.CW);
+        if (shape == CropView.Shape.OVAL) {
+            path.addOval(frameRect, Path.Direction.CW);
+        } else {
+            path.addRect(frameRect, Path.Direction.CW);
+        }
+    }
+}
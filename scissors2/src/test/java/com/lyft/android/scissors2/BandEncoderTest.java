@@ -0,0 +1,110 @@
+package com.lyft.android.scissors2;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BandEncoderTest {
+
+    static final int WIDTH = 173;
+    static final int HEIGHT = 91;
+    static final int BAND_HEIGHT = 37; // Deliberately not aligned on JPEG MCUs
+
+    @Test
+    public void pngIsLossless() throws IOException {
+        final int[] pixels = createPixels(true);
+
+        final BufferedImage image = encodeAndDecode(new PngBandEncoder(), pixels);
+
+        assertThat(image.getWidth()).isEqualTo(WIDTH);
+        assertThat(image.getHeight()).isEqualTo(HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertThat(image.getRGB(x, y)).isEqualTo(pixels[y * WIDTH + x]);
+            }
+        }
+    }
+
+    @Test
+    public void jpegIsCloseToSource() throws IOException {
+        final int[] pixels = createPixels(false);
+
+        final BufferedImage image = encodeAndDecode(new JpegBandEncoder(90), pixels);
+
+        assertThat(image.getWidth()).isEqualTo(WIDTH);
+        assertThat(image.getHeight()).isEqualTo(HEIGHT);
+        double squaredError = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                final int actual = image.getRGB(x, y);
+                final int expected = pixels[y * WIDTH + x];
+                for (int shift = 0; shift < 24; shift += 8) {
+                    final int diff = ((actual >> shift) & 0xff) - ((expected >> shift) & 0xff);
+                    squaredError += diff * diff;
+                }
+            }
+        }
+        final double psnr = 10 * Math.log10(255 * 255 / (squaredError / (WIDTH * HEIGHT * 3)));
+        assertThat(psnr).isGreaterThan(35);
+    }
+
+    @Test
+    public void jpegSizeFollowsQuality() throws IOException {
+        final int[] pixels = createPixels(false);
+
+        final int low = encode(new JpegBandEncoder(20), pixels).length;
+        final int high = encode(new JpegBandEncoder(95), pixels).length;
+
+        assertThat(low).isLessThan(high);
+    }
+
+    @Test
+    public void pngIsReusableAfterAbort() throws IOException {
+        final int[] pixels = createPixels(true);
+        final PngBandEncoder encoder = new PngBandEncoder();
+        encoder.begin(new ByteArrayOutputStream(), WIDTH, HEIGHT);
+        encoder.encode(pixels, BAND_HEIGHT);
+
+        encoder.abort();
+
+        final BufferedImage image = encodeAndDecode(encoder, pixels);
+        assertThat(image.getRGB(WIDTH - 1, HEIGHT - 1)).isEqualTo(pixels[WIDTH * HEIGHT - 1]);
+    }
+
+    static BufferedImage encodeAndDecode(BandEncoder encoder, int[] pixels) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(encode(encoder, pixels)));
+    }
+
+    static byte[] encode(BandEncoder encoder, int[] pixels) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final int[] band = new int[WIDTH * BAND_HEIGHT];
+
+        encoder.begin(outputStream, WIDTH, HEIGHT);
+        for (int top = 0; top < HEIGHT; top += BAND_HEIGHT) {
+            final int rowCount = Math.min(BAND_HEIGHT, HEIGHT - top);
+            System.arraycopy(pixels, top * WIDTH, band, 0, rowCount * WIDTH);
+            encoder.encode(band, rowCount);
+        }
+        encoder.end();
+        return outputStream.toByteArray();
+    }
+
+    static int[] createPixels(boolean withAlpha) {
+        final int[] pixels = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                final int alpha = withAlpha ? (x * 255 / WIDTH) : 0xff;
+                final int red = (int) (128 + 100 * Math.sin(x / 17.0));
+                final int green = (int) (128 + 60 * Math.cos(y / 11.0));
+                final int blue = (x + y) * 255 / (WIDTH + HEIGHT);
+                pixels[y * WIDTH + x] = alpha << 24 | red << 16 | green << 8 | blue;
+            }
+        }
+        return pixels;
+    }
+}
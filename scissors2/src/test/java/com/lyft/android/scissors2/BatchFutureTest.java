@@ -0,0 +1,172 @@
+package com.lyft.android.scissors2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class BatchFutureTest {
+
+    final CountDownLatch unblock = new CountDownLatch(1);
+    final List<Integer> cropped = Collections.synchronizedList(new ArrayList<Integer>());
+    final AtomicInteger released = new AtomicInteger();
+
+    CropExecutor executor;
+
+    @After
+    public void tearDown() {
+        unblock.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void resultsFollowSpecOrder() throws Exception {
+        executor = new CropExecutor(3, 6);
+        final TestBatch batch = new TestBatch(6, -1);
+
+        batch.start(executor, 3, 0);
+
+        final List<CropResult> results = batch.get(5, TimeUnit.SECONDS);
+        assertThat(results).hasSize(6);
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.get(i).getWidth()).isEqualTo(i);
+        }
+        assertThat(released.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void failsOnFirstFailedCrop() throws Exception {
+        executor = new CropExecutor(1, 2);
+        final TestBatch batch = new TestBatch(4, 1);
+
+        batch.start(executor, 1, 0);
+
+        try {
+            batch.get(5, TimeUnit.SECONDS);
+            fail("Expected the batch to fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(IOException.class);
+        }
+        assertThat(cropped).containsExactly(0, 1);
+        // Failing fast, the batch may complete before its worker stops
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(released.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void cancellingReleasesWorkersThatNeverStarted() throws Exception {
+        executor = new CropExecutor(1, 4);
+        block();
+        final TestBatch batch = new TestBatch(4, -1);
+        batch.start(executor, 2, 0);
+
+        assertThat(batch.cancel(false)).isTrue();
+
+        assertThat(batch.isDone()).isTrue();
+        assertThat(batch.isCancelled()).isTrue();
+        assertThat(released.get()).isEqualTo(1);
+        try {
+            batch.get();
+            fail("Expected a cancellation");
+        } catch (CancellationException expected) {
+        }
+        unblock.countDown();
+        assertThat(cropped).isEmpty();
+    }
+
+    @Test
+    public void rejectedWorkerLeavesCropsToOthers() throws Exception {
+        executor = new CropExecutor(1, 1);
+        block();
+        final TestBatch batch = new TestBatch(3, -1);
+
+        batch.start(executor, 2, 0);
+        unblock.countDown();
+
+        assertThat(batch.get(5, TimeUnit.SECONDS)).hasSize(3);
+        assertThat(cropped).containsExactly(0, 1, 2);
+        assertThat(released.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void failsWhenEveryWorkerIsRejected() throws Exception {
+        executor = new CropExecutor(1, 1);
+        block();
+        CropExecutor.submit(executor, new Callable<Void>() {
+            @Override
+            public Void call() {
+                return null;
+            }
+        }, 10);
+        final TestBatch batch = new TestBatch(3, -1);
+
+        batch.start(executor, 1, 0);
+
+        assertThat(batch.isDone()).isTrue();
+        try {
+            batch.get();
+            fail("Expected a rejection");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(RejectedExecutionException.class);
+        }
+        assertThat(released.get()).isEqualTo(1);
+    }
+
+    /**
+     * Keeps the only thread of the executor busy so that following tasks are queued.
+     */
+    void block() throws InterruptedException {
+        final CountDownLatch running = new CountDownLatch(1);
+        CropExecutor.submit(executor, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                running.countDown();
+                unblock.await();
+                return null;
+            }
+        }, 0);
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    class TestBatch extends BatchFuture {
+
+        final int failingIndex;
+
+        TestBatch(int count, int failingIndex) {
+            super(count);
+            this.failingIndex = failingIndex;
+        }
+
+        @Override
+        CropResult crop(int index) throws Exception {
+            cropped.add(index);
+            if (index == failingIndex) {
+                throw new IOException("Failed crop " + index);
+            }
+            return new CropResult(index, index);
+        }
+
+        @Override
+        void release() {
+            released.incrementAndGet();
+        }
+    }
+}
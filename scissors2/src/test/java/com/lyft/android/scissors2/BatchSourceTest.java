@@ -0,0 +1,45 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.Rect;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class BatchSourceTest {
+
+    static final long MAX_BYTES = 64 * 1024 * 1024;
+
+    @Test
+    public void overlappingRegionsAreDecodedOnce() {
+        final Rect[] regions = { new Rect(0, 0, 3000, 3000), new Rect(0, 500, 4000, 2750) };
+
+        assertThat(BatchSource.shouldDecodeOnce(regions, new int[] { 2, 2 }, MAX_BYTES)).isTrue();
+    }
+
+    @Test
+    public void distantRegionsAreDecodedSeparately() {
+        final Rect[] regions = { new Rect(0, 0, 500, 500), new Rect(3500, 2500, 4000, 3000) };
+
+        assertThat(BatchSource.shouldDecodeOnce(regions, new int[] { 1, 1 }, MAX_BYTES)).isFalse();
+    }
+
+    @Test
+    public void sharedDecodeStaysWithinBudget() {
+        final Rect[] regions = { new Rect(0, 0, 4000, 3000), new Rect(0, 0, 4000, 3000) };
+
+        assertThat(BatchSource.shouldDecodeOnce(regions, new int[] { 1, 1 }, 4000 * 3000)).isFalse();
+        assertThat(BatchSource.shouldDecodeOnce(new Rect[] { regions[0] }, new int[] { 1 }, MAX_BYTES)).isFalse();
+    }
+
+    @Test
+    public void wholeDecodeIsSampledToFitBudget() {
+        assertThat(BatchSource.budgetSample(4000, 3000, 1, MAX_BYTES)).isEqualTo(1);
+        assertThat(BatchSource.budgetSample(4000, 3000, 1, 4000 * 3000)).isEqualTo(2);
+        assertThat(BatchSource.budgetSample(4000, 3000, 2, 4000 * 3000 / 4)).isEqualTo(4);
+    }
+}
@@ -0,0 +1,67 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class BitmapReusePoolTest {
+
+    final BitmapReusePool pool = new BitmapReusePool(10 * 10 * 4 * 3);
+
+    @Test
+    public void reusesBitmapOfSameSize() {
+        final Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        pool.put(bitmap);
+
+        assertThat(pool.obtain(10, 10, Bitmap.Config.ARGB_8888)).isSameAs(bitmap);
+        assertThat(pool.getByteCount()).isZero();
+    }
+
+    @Test
+    public void allocatesWhenNothingIsLargeEnough() {
+        final Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        pool.put(bitmap);
+
+        assertThat(pool.obtain(20, 10, Bitmap.Config.ARGB_8888)).isNotSameAs(bitmap);
+        assertThat(pool.getByteCount()).isEqualTo(400);
+    }
+
+    @Test
+    public void recyclesLeastRecentlyReturnedWhenFull() {
+        final Bitmap oldest = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        pool.put(oldest);
+        for (int i = 0; i < 3; i++) {
+            pool.put(Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888));
+        }
+
+        assertThat(oldest.isRecycled()).isTrue();
+        assertThat(pool.getByteCount()).isEqualTo(1200);
+    }
+
+    @Test
+    public void downsamplesInHalvingSteps() {
+        final Bitmap bitmap = Bitmap.createBitmap(40, 20, Bitmap.Config.ARGB_8888);
+
+        final Bitmap reduced = pool.downsample(bitmap, 4);
+
+        assertThat(reduced.getWidth()).isEqualTo(10);
+        assertThat(reduced.getHeight()).isEqualTo(5);
+        assertThat(pool.downsample(bitmap, 1)).isSameAs(bitmap);
+    }
+
+    @Test
+    public void recyclesImmutableBitmaps() {
+        final Bitmap bitmap = Bitmap.createBitmap(new int[100], 10, 10, Bitmap.Config.ARGB_8888);
+
+        pool.put(bitmap);
+
+        assertThat(bitmap.isRecycled()).isTrue();
+        assertThat(pool.getByteCount()).isZero();
+    }
+}
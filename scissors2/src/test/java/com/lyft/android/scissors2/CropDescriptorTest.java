@@ -0,0 +1,51 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.RectF;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CropDescriptorTest {
+
+    @Test
+    public void encodedDescriptorParsesBack() {
+        final CropDescriptor descriptor = new CropDescriptor(new RectF(0.1f, 0.2f, 0.7f, 0.9f))
+                .withOutputSize(512, 384);
+
+        final CropDescriptor parsed = CropDescriptor.parse(descriptor.encode());
+
+        assertThat(parsed).isEqualTo(descriptor);
+        assertThat(parsed.getOutputWidth()).isEqualTo(512);
+        final RectF rect = new RectF();
+        parsed.getNormalizedCropRect(rect);
+        assertThat(rect).isEqualTo(new RectF(0.1f, 0.2f, 0.7f, 0.9f));
+    }
+
+    @Test
+    public void laterVersionsAreRejected() {
+        try {
+            CropDescriptor.parse((CropDescriptor.VERSION + 1) + ",0.0,0.0,1.0,1.0,0,0");
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected).hasMessageContaining("version");
+        }
+    }
+
+    @Test
+    public void malformedDescriptorsAreRejected() {
+        for (String encoded : new String[] { "", "1,0.0,0.0,1.0", "1,0.5,0.0,0.2,1.0,0,0", "1,a,0.0,1.0,1.0,0,0" }) {
+            try {
+                CropDescriptor.parse(encoded);
+                fail("Expected an IllegalArgumentException for " + encoded);
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+}
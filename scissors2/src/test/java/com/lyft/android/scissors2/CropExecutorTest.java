@@ -0,0 +1,161 @@
+package com.lyft.android.scissors2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CropExecutorTest {
+
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<Integer> started = Collections.synchronizedList(new ArrayList<Integer>());
+
+    CropExecutor executor;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = new CropExecutor(1, 2);
+
+        // Keep the only worker busy so that following tasks are queued
+        final CountDownLatch running = new CountDownLatch(1);
+        CropExecutor.submit(executor, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                running.countDown();
+                release.await();
+                return null;
+            }
+        }, 0);
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void startsHigherPriorityFirst() throws Exception {
+        final Future<Void> low = submit(1, 0);
+        final Future<Void> high = submit(2, 10);
+
+        release.countDown();
+        low.get(5, TimeUnit.SECONDS);
+        high.get(5, TimeUnit.SECONDS);
+
+        assertThat(started).containsExactly(2, 1);
+    }
+
+    @Test
+    public void rejectsQueuedTaskStartingLastWhenFull() throws Exception {
+        final Future<Void> oldLow = submit(1, 0);
+        final Future<Void> newLow = submit(2, 0);
+        final Future<Void> high = submit(3, 5);
+
+        assertRejected(newLow);
+
+        release.countDown();
+        oldLow.get(5, TimeUnit.SECONDS);
+        high.get(5, TimeUnit.SECONDS);
+
+        assertThat(started).containsExactly(3, 1);
+    }
+
+    @Test
+    public void rejectsNewTaskStartingLastAndTellsIt() throws Exception {
+        submit(1, 5);
+        submit(2, 5);
+        final List<Throwable> rejections = new ArrayList<>();
+
+        final Future<Void> low = CropExecutor.submit(executor, new RejectableTask(rejections), 0);
+
+        assertRejected(low);
+        assertThat(rejections).hasSize(1);
+        assertThat(executor.getQueue()).hasSize(2);
+    }
+
+    @Test
+    public void neverRejectsLoads() throws Exception {
+        final Future<Void> first = submit(1, 10);
+        final Future<Void> second = submit(2, 10);
+
+        final Future<Void> load = CropExecutor.submit(executor, new Callable<Void>() {
+            @Override
+            public Void call() {
+                started.add(3);
+                return null;
+            }
+        }, 1, false);
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        load.get(5, TimeUnit.SECONDS);
+        assertThat(started).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void cancelledTaskLeavesQueue() {
+        final Future<Void> pending = submit(1, 0);
+        assertThat(executor.getQueue()).hasSize(1);
+
+        pending.cancel(true);
+
+        assertThat(executor.getQueue()).isEmpty();
+    }
+
+    static void assertRejected(Future<Void> future) throws InterruptedException {
+        try {
+            future.get();
+            fail("Expected a rejection");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(RejectedExecutionException.class);
+        }
+    }
+
+    static class RejectableTask implements Callable<Void>, CropExecutor.Rejectable {
+
+        final List<Throwable> rejections;
+
+        RejectableTask(List<Throwable> rejections) {
+            this.rejections = rejections;
+        }
+
+        @Override
+        public Void call() {
+            return null;
+        }
+
+        @Override
+        public void onRejected(RejectedExecutionException e) {
+            rejections.add(e);
+        }
+    }
+
+    Future<Void> submit(final int id, int priority) {
+        return CropExecutor.submit(executor, new Callable<Void>() {
+            @Override
+            public Void call() {
+                started.add(id);
+                return null;
+            }
+        }, priority);
+    }
+}
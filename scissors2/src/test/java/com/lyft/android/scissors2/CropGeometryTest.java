@@ -0,0 +1,55 @@
+package com.lyft.android.scissors2;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class CropGeometryTest {
+
+    @Test
+    public void viewportMatchesImageRatioByDefault() {
+        final int[] viewport = new int[2];
+
+        CropGeometry.computeViewportSize(800, 400, 600, 600, 0f, 0, viewport);
+
+        assertThat(viewport).containsExactly(600, 300);
+    }
+
+    @Test
+    public void viewportKeepsPadding() {
+        final int[] viewport = new int[2];
+
+        CropGeometry.computeViewportSize(800, 400, 600, 800, 1f, 20, viewport);
+
+        assertThat(viewport).containsExactly(560, 560);
+    }
+
+    @Test
+    public void minimumScaleCoversViewport() {
+        final float scale = CropGeometry.computeMinimumScale(800, 400, 300, 300);
+
+        assertThat(scale).isEqualTo(0.75f);
+        assertThat(800 * scale).isGreaterThanOrEqualTo(300);
+        assertThat(400 * scale).isGreaterThanOrEqualTo(300);
+    }
+
+    @Test
+    public void positionStaysWithinLimits() {
+        final int limit = CropGeometry.computeLimit(600, 300);
+
+        assertThat(CropGeometry.clampPosition(500, 200, limit, 0)).isEqualTo(350f);
+        assertThat(CropGeometry.clampPosition(-100, 200, limit, 0)).isEqualTo(50f);
+        assertThat(CropGeometry.clampPosition(210, 200, limit, 0)).isEqualTo(210f);
+    }
+
+    @Test
+    public void normalizedEdgesRoundTrip() {
+        final float scale = CropGeometry.computeScaleToCover(300, 300, 400, 400);
+        final float position = CropGeometry.computePosition(0, 0.25f, scale, 800);
+
+        assertThat(CropGeometry.normalizeEdge(0, position, scale, 800)).isCloseTo(0.25f, within(1e-6f));
+        assertThat(CropGeometry.normalizeEdge(300, position, scale, 800)).isCloseTo(0.75f, within(1e-6f));
+        assertThat(CropGeometry.normalizeEdge(-1000, position, scale, 800)).isEqualTo(0f);
+    }
+}
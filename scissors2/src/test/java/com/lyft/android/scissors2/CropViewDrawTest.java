@@ -0,0 +1,234 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.media.ExifInterface;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CropViewDrawTest {
+
+    CropView cropView;
+    RecordingCanvas canvas;
+
+    @Before
+    public void setUp() {
+        cropView = new CropView(RuntimeEnvironment.application);
+        cropView.layout(0, 0, 400, 300);
+        cropView.setImageBitmap(Bitmap.createBitmap(800, 600, Bitmap.Config.ARGB_8888));
+        canvas = new RecordingCanvas();
+    }
+
+    @Test
+    public void rectangleFramesReuseTheSameObjects() {
+        cropView.onDraw(canvas);
+        final int paintCount = canvas.paints.size();
+        final int drawCount = canvas.drawCount;
+
+        for (int i = 0; i < 10; i++) {
+            cropView.onDraw(canvas);
+        }
+
+        assertThat(canvas.paints).hasSize(paintCount);
+        assertThat(canvas.drawCount).isEqualTo(drawCount * 11);
+    }
+
+    @Test
+    public void overlayIsDrawnInOnePass() {
+        for (int shape : new int[] {CropView.Shape.RECTANGLE, CropView.Shape.OVAL}) {
+            cropView.setShape(shape);
+            canvas = new RecordingCanvas();
+
+            cropView.onDraw(canvas);
+
+            assertThat(canvas.rectCount).isZero();
+            assertThat(canvas.pathCount).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void framesReuseTheSameOverlayPath() {
+        cropView.onDraw(canvas);
+        final int paintCount = canvas.paints.size();
+
+        for (int i = 0; i < 10; i++) {
+            cropView.onDraw(canvas);
+        }
+
+        assertThat(canvas.paints).hasSize(paintCount);
+        assertThat(canvas.paths).hasSize(1);
+        final Path path = canvas.paths.get(0);
+
+        cropView.setShape(CropView.Shape.OVAL);
+        cropView.layout(0, 0, 300, 300);
+        cropView.onDraw(canvas);
+
+        assertThat(canvas.paths).containsExactly(path);
+    }
+
+    @Test
+    public void handleColorIsConfigurable() {
+        cropView.setHandleColor(0xFFFF0000);
+        cropView.setHandleStrokeWidth(7);
+
+        cropView.onDraw(canvas);
+
+        assertThat(canvas.lineColors).containsOnly(0xFFFF0000);
+        assertThat(canvas.lineWidths).containsOnly(7f);
+    }
+
+    @Test
+    public void framesDoNotAllocate() {
+        final Canvas canvas = new BlankCanvas();
+        final FramePositioning positioning = new FramePositioning(cropView);
+        for (int shape : new int[] {CropView.Shape.RECTANGLE, CropView.Shape.OVAL}) {
+            cropView.setShape(shape);
+
+            // Warm up so that lazily initialized runtime state is not accounted for
+            drawFrames(canvas, 1000);
+            positioning.run(1000);
+            final long before = allocatedBytes();
+            drawFrames(canvas, 1000);
+            final long allocated = allocatedBytes() - before;
+            // Robolectric's shadows of Matrix and Bitmap allocate on every call, only the rest of the frames is measured
+            final long beforePositioning = allocatedBytes();
+            positioning.run(1000);
+            final long positioningAllocated = allocatedBytes() - beforePositioning;
+
+            assertThat(allocated - positioningAllocated).isZero();
+        }
+    }
+
+    void drawFrames(Canvas canvas, int count) {
+        for (int i = 0; i < count; i++) {
+            cropView.onDraw(canvas);
+        }
+    }
+
+    static long allocatedBytes() {
+        final com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Makes the same {@link Matrix} and {@link Bitmap} calls as frames of the image displayed by <code>cropView</code>,
+     * positioned by a touch manager in the same state.
+     */
+    static class FramePositioning {
+
+        final TouchManager touchManager;
+        final Bitmap bitmap;
+        final Matrix positioning = new Matrix();
+        final Matrix transform = new Matrix();
+
+        FramePositioning(CropView cropView) {
+            bitmap = cropView.getImageBitmap();
+            touchManager = new TouchManager(cropView, new CropViewConfig());
+            touchManager.resetFor(bitmap.getWidth(), bitmap.getHeight(), cropView.getWidth(), cropView.getHeight());
+        }
+
+        void run(int count) {
+            for (int i = 0; i < count; i++) {
+                positioning.reset();
+                touchManager.applyPositioningAndScale(positioning);
+                ExifOrientation.getMatrix(ExifInterface.ORIENTATION_NORMAL, bitmap.getWidth(), bitmap.getHeight(),
+                        transform);
+                transform.postConcat(positioning);
+            }
+        }
+    }
+
+    /**
+     * Records the objects passed to draw calls instead of drawing anything.
+     */
+    static class RecordingCanvas extends Canvas {
+
+        final Map<Paint, Boolean> paints = new IdentityHashMap<>();
+        final List<Path> paths = new ArrayList<>();
+        final List<Integer> lineColors = new ArrayList<>();
+        final List<Float> lineWidths = new ArrayList<>();
+        int drawCount;
+        int rectCount;
+        int pathCount;
+
+        @Override
+        public void drawBitmap(Bitmap bitmap, Matrix matrix, Paint paint) {
+            record(paint);
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+            record(paint);
+            rectCount++;
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius, Paint paint) {
+            record(paint);
+        }
+
+        @Override
+        public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+            record(paint);
+            lineColors.add(paint.getColor());
+            lineWidths.add(paint.getStrokeWidth());
+        }
+
+        @Override
+        public void drawPath(Path path, Paint paint) {
+            record(paint);
+            pathCount++;
+            if (!paths.contains(path)) {
+                paths.add(path);
+            }
+        }
+
+        private void record(Paint paint) {
+            paints.put(paint, Boolean.TRUE);
+            drawCount++;
+        }
+    }
+
+    /**
+     * Draws nothing, Robolectric's shadow of {@link Canvas} keeps a description of every draw call.
+     */
+    static class BlankCanvas extends Canvas {
+
+        @Override
+        public void drawBitmap(Bitmap bitmap, Matrix matrix, Paint paint) {
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        }
+
+        @Override
+        public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+        }
+
+        @Override
+        public void drawPath(Path path, Paint paint) {
+        }
+    }
+}
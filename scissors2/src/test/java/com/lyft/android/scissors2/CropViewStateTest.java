@@ -0,0 +1,166 @@
+package com.lyft.android.scissors2;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+import android.media.ExifInterface;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.view.View;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CropViewStateTest {
+
+    RotatingActivity activity;
+    CropView cropView;
+    Bitmap bitmap;
+
+    @Before
+    public void setUp() {
+        activity = Robolectric.buildActivity(RotatingActivity.class).create().get();
+        activity.changingConfigurations = true;
+        cropView = new CropView(activity);
+        cropView.layout(0, 0, 400, 300);
+        bitmap = Bitmap.createBitmap(800, 600, Bitmap.Config.ARGB_8888);
+        cropView.setImageBitmap(bitmap);
+    }
+
+    @Test
+    public void recreatedViewReusesBitmap() {
+        final Parcelable state = cropView.onSaveInstanceState();
+
+        final CropView recreated = new CropView(RuntimeEnvironment.application);
+        recreated.onRestoreInstanceState(state);
+        recreated.layout(0, 0, 300, 400);
+
+        assertThat(recreated.getImageBitmap()).isSameAs(bitmap);
+    }
+
+    @Test
+    public void bitmapIsOnlyRetainedAcrossConfigurationChanges() {
+        activity.changingConfigurations = false;
+
+        final CropView.SavedState state = (CropView.SavedState) cropView.onSaveInstanceState();
+
+        assertThat(state.retainedBitmapId).isZero();
+    }
+
+    @Test
+    public void detachedViewDropsRetainedBitmap() {
+        final CropView.SavedState state = (CropView.SavedState) cropView.onSaveInstanceState();
+        assertThat(state.retainedBitmapId).isNotZero();
+        activity.changingConfigurations = false;
+
+        cropView.onDetachedFromWindow();
+
+        assertThat(RetainedBitmaps.release(state.retainedBitmapId)).isNull();
+    }
+
+    @Test
+    public void retainedBitmapSurvivesDetachingForConfigurationChange() {
+        final CropView.SavedState state = (CropView.SavedState) cropView.onSaveInstanceState();
+
+        cropView.onDetachedFromWindow();
+
+        assertThat(RetainedBitmaps.release(state.retainedBitmapId)).isSameAs(bitmap);
+    }
+
+    @Test
+    public void stateSurvivesParceling() {
+        cropView.setViewportRatio(2f);
+        final CropView.SavedState state = (CropView.SavedState) cropView.onSaveInstanceState();
+        state.sourceModel = "/sdcard/image.jpg";
+
+        final Parcel parcel = Parcel.obtain();
+        state.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        final CropView.SavedState restored = CropView.SavedState.CREATOR.createFromParcel(parcel);
+        parcel.recycle();
+
+        assertThat(restored.normalizedCropRect).isEqualTo(state.normalizedCropRect);
+        assertThat(restored.viewportRatio).isEqualTo(2f);
+        assertThat(restored.retainedBitmapId).isEqualTo(state.retainedBitmapId);
+        assertThat(restored.bitmapOrientation).isEqualTo(ExifInterface.ORIENTATION_NORMAL);
+        assertThat(restored.sourceModel).isEqualTo("/sdcard/image.jpg");
+        assertThat(restored.getSuperState()).isSameAs(View.BaseSavedState.EMPTY_STATE);
+    }
+
+    @Test
+    public void lowMemoryQualityOnlyReducesOpaqueImages() {
+        assertThat(CropViewConfig.getDisplayConfig(CropView.DisplayQuality.LOW_MEMORY, true))
+                .isEqualTo(Bitmap.Config.RGB_565);
+        assertThat(CropViewConfig.getDisplayConfig(CropView.DisplayQuality.LOW_MEMORY, false))
+                .isEqualTo(Bitmap.Config.ARGB_8888);
+        assertThat(CropViewConfig.getDisplayConfig(CropView.DisplayQuality.FULL, true))
+                .isEqualTo(Bitmap.Config.ARGB_8888);
+    }
+
+    @Test
+    public void cropsStraightToOutputSize() {
+        final Bitmap cropped = cropView.crop(100, 75);
+
+        assertThat(cropped.getWidth()).isEqualTo(100);
+        assertThat(cropped.getHeight()).isEqualTo(75);
+    }
+
+    @Test
+    public void appliedDescriptorIsRestored() {
+        final RectF initial = new RectF();
+        cropView.getCropDescriptor().getNormalizedCropRect(initial);
+        final RectF zoomed = new RectF(0.1f, 0.1f, 0.1f + initial.width() / 2, 0.1f + initial.height() / 2);
+
+        cropView.applyDescriptor(new CropDescriptor(zoomed));
+
+        final RectF restored = new RectF();
+        cropView.getCropDescriptor().getNormalizedCropRect(restored);
+        assertThat(restored.left).isCloseTo(zoomed.left, within(0.01f));
+        assertThat(restored.top).isCloseTo(zoomed.top, within(0.01f));
+        assertThat(restored.width()).isCloseTo(zoomed.width(), within(0.01f));
+        assertThat(restored.height()).isCloseTo(zoomed.height(), within(0.01f));
+    }
+
+    @Test
+    public void reducedBitmapIsFlagged() {
+        assertThat(cropView.isDisplayBitmapReduced()).isFalse();
+
+        cropView.setImageBitmap(Bitmap.createBitmap(800, 600, Bitmap.Config.RGB_565));
+
+        assertThat(cropView.isDisplayBitmapReduced()).isTrue();
+    }
+
+    @Test
+    public void orientedBitmapIsLaidOutAsDisplayed() {
+        cropView.setImageBitmap(bitmap, ExifInterface.ORIENTATION_ROTATE_90);
+
+        assertThat(cropView.getImageRatio()).isEqualTo(0.75f);
+        assertThat(cropView.getImageOrientation()).isEqualTo(ExifInterface.ORIENTATION_ROTATE_90);
+        assertThat(cropView.snapshotState().getOrientation()).isEqualTo(ExifInterface.ORIENTATION_ROTATE_90);
+
+        final CropView.SavedState state = (CropView.SavedState) cropView.onSaveInstanceState();
+        final CropView recreated = new CropView(RuntimeEnvironment.application);
+        recreated.onRestoreInstanceState(state);
+
+        assertThat(recreated.getImageOrientation()).isEqualTo(ExifInterface.ORIENTATION_ROTATE_90);
+    }
+
+    public static class RotatingActivity extends Activity {
+
+        boolean changingConfigurations;
+
+        @Override
+        public boolean isChangingConfigurations() {
+            return changingConfigurations;
+        }
+    }
+}
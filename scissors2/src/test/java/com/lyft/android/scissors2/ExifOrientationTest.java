@@ -0,0 +1,135 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.RectF;
+import android.media.ExifInterface;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ExifOrientationTest {
+
+    @Test
+    public void readsOrientationInEitherByteOrder() throws IOException {
+        assertThat(parse(jpeg(ExifInterface.ORIENTATION_ROTATE_90, false)))
+                .isEqualTo(ExifInterface.ORIENTATION_ROTATE_90);
+        assertThat(parse(jpeg(ExifInterface.ORIENTATION_TRANSVERSE, true)))
+                .isEqualTo(ExifInterface.ORIENTATION_TRANSVERSE);
+    }
+
+    @Test
+    public void defaultsToNormal() throws IOException {
+        assertThat(parse(new byte[] {(byte) 0x89, 'P', 'N', 'G'})).isEqualTo(ExifInterface.ORIENTATION_NORMAL);
+        assertThat(parse(jpeg(42, false))).isEqualTo(ExifInterface.ORIENTATION_NORMAL);
+    }
+
+    @Test
+    public void mapsDisplayedRectBackToStoredPixels() {
+        final int width = 400;
+        final int height = 300;
+        final RectF stored = new RectF(40, 30, 200, 120);
+        for (int orientation = ExifInterface.ORIENTATION_NORMAL;
+                orientation <= ExifInterface.ORIENTATION_ROTATE_270; orientation++) {
+            final float[] corners = {stored.left, stored.top, stored.right, stored.bottom};
+            display(orientation, corners, 0, width, height);
+            display(orientation, corners, 2, width, height);
+            final int displayedWidth = ExifOrientation.getOrientedWidth(orientation, width, height);
+            final int displayedHeight = ExifOrientation.getOrientedHeight(orientation, width, height);
+            final RectF normalized = new RectF(corners[0], corners[1], corners[2], corners[3]);
+            normalized.sort();
+            normalized.set(normalized.left / displayedWidth, normalized.top / displayedHeight,
+                    normalized.right / displayedWidth, normalized.bottom / displayedHeight);
+
+            final RectF result = new RectF();
+            ExifOrientation.toStored(orientation, normalized, result);
+
+            assertThat(result.left * width).as("orientation %d", orientation).isEqualTo(stored.left, offset(0.01f));
+            assertThat(result.top * height).as("orientation %d", orientation).isEqualTo(stored.top, offset(0.01f));
+            assertThat(result.right * width).as("orientation %d", orientation).isEqualTo(stored.right, offset(0.01f));
+            assertThat(result.bottom * height).as("orientation %d", orientation)
+                    .isEqualTo(stored.bottom, offset(0.01f));
+        }
+    }
+
+    /**
+     * Where the stored pixel at <code>points[index], points[index + 1]</code> ends up once displayed, as per the EXIF
+     * specification.
+     */
+    static void display(int orientation, float[] points, int index, int width, int height) {
+        final float x = points[index];
+        final float y = points[index + 1];
+        final float[] displayed;
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                displayed = new float[] {width - x, y};
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                displayed = new float[] {width - x, height - y};
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                displayed = new float[] {x, height - y};
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                displayed = new float[] {y, x};
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                displayed = new float[] {height - y, x};
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                displayed = new float[] {height - y, width - x};
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                displayed = new float[] {y, width - x};
+                break;
+            default:
+                displayed = new float[] {x, y};
+                break;
+        }
+        points[index] = displayed[0];
+        points[index + 1] = displayed[1];
+    }
+
+    static int parse(byte[] data) throws IOException {
+        return ExifOrientation.parse(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * A JPEG header made of a JFIF segment followed by an EXIF one holding a single orientation entry.
+     */
+    static byte[] jpeg(int orientation, boolean littleEndian) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, 0xFF, 0xD8);
+        write(out, 0xFF, 0xE0, 0x00, 0x07, 'J', 'F', 'I', 'F', 0x00);
+
+        final ByteArrayOutputStream tiff = new ByteArrayOutputStream();
+        if (littleEndian) {
+            write(tiff, 'I', 'I', 42, 0, 8, 0, 0, 0);
+            write(tiff, 1, 0);
+            write(tiff, 0x12, 0x01, 3, 0, 1, 0, 0, 0, orientation, 0, 0, 0);
+        } else {
+            write(tiff, 'M', 'M', 0, 42, 0, 0, 0, 8);
+            write(tiff, 0, 1);
+            write(tiff, 0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, orientation, 0, 0);
+        }
+        write(tiff, 0, 0, 0, 0);
+        final int length = 2 + 6 + tiff.size();
+        write(out, 0xFF, 0xE1, length >> 8, length & 0xFF, 'E', 'x', 'i', 'f', 0, 0);
+        out.write(tiff.toByteArray(), 0, tiff.size());
+        write(out, 0xFF, 0xDA);
+        return out.toByteArray();
+    }
+
+    static void write(ByteArrayOutputStream out, int... bytes) {
+        for (int b : bytes) {
+            out.write(b);
+        }
+    }
+}
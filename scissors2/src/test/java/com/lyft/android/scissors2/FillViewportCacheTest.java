@@ -0,0 +1,62 @@
+package com.lyft.android.scissors2;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class FillViewportCacheTest {
+
+    final FillViewportCache cache = new FillViewportCache(10 * 10 * 4 * 4);
+    final Uri model = Uri.parse("content://images/1");
+
+    @Test
+    public void keyedByModelViewportAndConfig() {
+        final Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        cache.put(key(model, 100, 100), bitmap);
+
+        assertThat(cache.get(key(Uri.parse("content://images/1"), 100, 100))).isSameAs(bitmap);
+        assertThat(cache.get(key(model, 100, 120))).isNull();
+        assertThat(cache.get(key(Uri.parse("content://images/2"), 100, 100))).isNull();
+        assertThat(cache.get(FillViewportCache.createKey(model, 100, 100, Bitmap.Config.RGB_565))).isNull();
+    }
+
+    @Test
+    public void dropsRecycledBitmaps() {
+        final Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        cache.put(key(model, 100, 100), bitmap);
+
+        bitmap.recycle();
+
+        assertThat(cache.get(key(model, 100, 100))).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void trimsWithoutRecycling() {
+        final Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        cache.put(key(model, 100, 100), bitmap);
+        for (int i = 2; i <= 4; i++) {
+            cache.put(key(model, 100 * i, 100 * i), Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888));
+        }
+
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertThat(cache.size()).isEqualTo(800);
+        assertThat(cache.get(key(model, 100, 100))).isNull();
+
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertThat(cache.size()).isZero();
+        assertThat(bitmap.isRecycled()).isFalse();
+    }
+
+    static FillViewportCache.Key key(Object model, int width, int height) {
+        return FillViewportCache.createKey(model, width, height, Bitmap.Config.ARGB_8888);
+    }
+}
@@ -0,0 +1,41 @@
+package com.lyft.android.scissors2;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SizeTargetedEncoderTest {
+
+    final List<Integer> estimated = new ArrayList<>();
+
+    /**
+     * 1000 bytes per quality point.
+     */
+    final SizeTargetedEncoder.SizeEstimator estimator = new SizeTargetedEncoder.SizeEstimator() {
+        @Override
+        public long estimate(int quality) {
+            estimated.add(quality);
+            return quality * 1000L;
+        }
+    };
+
+    @Test
+    public void picksHighestQualityFittingBudget() throws Exception {
+        assertThat(SizeTargetedEncoder.search(30, 100, 72500, estimator)).isEqualTo(72);
+        assertThat(SizeTargetedEncoder.search(30, 100, 100000, estimator)).isEqualTo(100);
+    }
+
+    @Test
+    public void fallsBackToLowestQuality() throws Exception {
+        assertThat(SizeTargetedEncoder.search(30, 100, 1000, estimator)).isEqualTo(30);
+    }
+
+    @Test
+    public void estimatesLogarithmicallyManyQualities() throws Exception {
+        SizeTargetedEncoder.search(0, 100, 42000, estimator);
+
+        assertThat(estimated.size()).isLessThanOrEqualTo(7);
+    }
+}
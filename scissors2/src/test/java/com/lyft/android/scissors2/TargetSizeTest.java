@@ -10,6 +10,7 @@ import org.robolectric.annotation.Config;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
+import static org.assertj.core.api.Assertions.within;
 
 @RunWith(ParameterizedRobolectricTestRunner.class)
 @Config(manifest = Config.NONE)
@@ -93,6 +94,47 @@ public class TargetSizeTest {
         }
     }
 
+    @Test
+    public void sampleSizeKeepsTargetCovered() {
+        final int sourceW = viewport.width() * 7;
+        final int sourceH = viewport.height() * 7;
+
+        Rect target = CropViewExtensions.computeTargetSize(sourceW, sourceH, viewport.width(), viewport.height());
+        int sampleSize = CropViewExtensions.computeSampleSize(sourceW, sourceH, target.width(), target.height());
+
+        assertThat(sampleSize).isEqualTo(4);
+        assertThat(sourceW / sampleSize).isGreaterThanOrEqualTo(target.width());
+        assertThat(sourceH / sampleSize).isGreaterThanOrEqualTo(target.height());
+    }
+
+    @Test
+    public void decodedTargetSizeIsStable() {
+        final int sourceW = viewport.width() * 7 + 3;
+        final int sourceH = viewport.height() * 5 + 1;
+
+        Rect target = CropViewExtensions.computeTargetSize(sourceW, sourceH, viewport.width(), viewport.height());
+        Rect again = CropViewExtensions.computeTargetSize(target.width(), target.height(),
+                viewport.width(), viewport.height());
+
+        assertThat(again).isEqualTo(target);
+        assertThat(CropViewExtensions.isTargetSize(target.width() + 1, target.height(), target)).isTrue();
+        assertThat(CropViewExtensions.isTargetSize(sourceW, sourceH, target)).isFalse();
+    }
+
+    @Test
+    public void outputSizeFitsKeepingRatio() {
+        final int cropW = viewport.width() * 10;
+        final int cropH = viewport.height() * 10;
+
+        Rect output = CropViewExtensions.computeOutputSize(cropW, cropH, 50, 50);
+
+        assertThat(Math.max(output.width(), output.height())).isEqualTo(50);
+        assertThat((float) output.width() / output.height())
+                .isCloseTo((float) cropW / cropH, within(0.05f));
+        assertThat(CropViewExtensions.computeOutputSize(cropW, cropH, cropW * 2, cropH * 2))
+                .isEqualTo(new Rect(0, 0, cropW, cropH));
+    }
+
     static final String SQUARED = "Squared";
     static final String LANDSCAPE = "Landscape";
     static final String PORTRAIT = "Portrait";
@@ -0,0 +1,96 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class TileRendererTest {
+
+    static final int TILE_BYTES = 16 * 16 * 4;
+
+    final BitmapReusePool pool = new BitmapReusePool(TILE_BYTES * 16);
+
+    @Test
+    public void fullResolutionWhenMagnified() {
+        assertThat(TileRenderer.computeSampleSize(3f)).isEqualTo(1);
+        assertThat(TileRenderer.computeSampleSize(1f)).isEqualTo(1);
+    }
+
+    @Test
+    public void sampleKeepsOneDecodedPixelPerViewPixel() {
+        assertThat(TileRenderer.computeSampleSize(0.6f)).isEqualTo(1);
+        assertThat(TileRenderer.computeSampleSize(0.5f)).isEqualTo(2);
+        assertThat(TileRenderer.computeSampleSize(0.3f)).isEqualTo(2);
+        assertThat(TileRenderer.computeSampleSize(0.1f)).isEqualTo(8);
+    }
+
+    @Test
+    public void cacheHoldsTilesVisibleAtTwiceTheScreenResolution() {
+        final int width = 1080;
+        final int height = 1920;
+        final int span = TileRenderer.TILE_SIZE / 2;
+        // Worst case, a grid of half screen pixel tiles not aligned on the screen
+        final int visible = (width / span + 2) * (height / span + 2);
+
+        assertThat(TileRenderer.computeMaxTiles(width, height)).isGreaterThanOrEqualTo(visible);
+        assertThat(TileRenderer.computeMaxTiles(width, height)).isLessThan(visible * 2);
+    }
+
+    @Test
+    public void cacheIsBoundedInTiles() {
+        final TileRenderer.TileCache tiles = new TileRenderer.TileCache(2, pool);
+
+        tiles.put(key(1, 0, 0), newTile());
+        tiles.put(key(1, 1, 0), newTile());
+        tiles.put(key(1, 2, 0), newTile());
+
+        assertThat(tiles.size()).isEqualTo(2);
+        assertThat(tiles.get(key(1, 0, 0))).isNull();
+    }
+
+    @Test
+    public void removedTilesAreReusedFromTheNextFrame() {
+        final TileRenderer.TileCache tiles = new TileRenderer.TileCache(4, pool);
+        tiles.put(key(1, 0, 0), newTile());
+
+        tiles.evictAll();
+
+        assertThat(pool.getByteCount()).isZero();
+        tiles.recycleRetired();
+        assertThat(pool.getByteCount()).isEqualTo(TILE_BYTES);
+    }
+
+    @Test
+    public void onlyVisibleTilesAreRetained() {
+        final TileRenderer.TileCache tiles = new TileRenderer.TileCache(8, pool);
+        tiles.put(key(1, 0, 0), newTile());
+        tiles.put(key(1, 1, 0), newTile());
+        tiles.put(key(1, 4, 4), newTile());
+        tiles.put(key(2, 0, 0), newTile());
+
+        final int size = TileRenderer.TILE_SIZE;
+        tiles.retainVisible(1, size / 2, 0, size * 2, size);
+
+        assertThat(tiles.get(key(1, 0, 0))).isNotNull();
+        assertThat(tiles.get(key(1, 1, 0))).isNotNull();
+        assertThat(tiles.size()).isEqualTo(2);
+        tiles.recycleRetired();
+        assertThat(pool.getByteCount()).isEqualTo(TILE_BYTES * 2);
+    }
+
+    static TileRenderer.TileKey key(int sample, int column, int row) {
+        final TileRenderer.TileKey key = new TileRenderer.TileKey();
+        key.set(sample, column, row);
+        return key;
+    }
+
+    static Bitmap newTile() {
+        return Bitmap.createBitmap(16, 16, Bitmap.Config.ARGB_8888);
+    }
+}
@@ -0,0 +1,204 @@
+package com.lyft.android.scissors2;
+
+import android.animation.ValueAnimator;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.ImageView;
+import android.widget.OverScroller;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class TouchManagerTest {
+
+    static final int VIEW_WIDTH = 400;
+    static final int VIEW_HEIGHT = 300;
+
+    TouchManager touchManager;
+    final Rect dirty = new Rect();
+
+    @Before
+    public void setUp() {
+        final CropView cropView = new CropView(RuntimeEnvironment.application);
+        touchManager = new TouchManager(cropView, new CropViewConfig());
+        touchManager.resetFor(800, 600, VIEW_WIDTH, VIEW_HEIGHT);
+    }
+
+    @Test
+    public void handleDragOnlyDirtiesFrameArea() {
+        assertThat(touchManager.onEvent(event(MotionEvent.ACTION_DOWN, 400, 150), dirty)).isFalse();
+        assertThat(dirty.isEmpty()).isTrue();
+
+        assertThat(touchManager.onEvent(event(MotionEvent.ACTION_MOVE, 350, 150), dirty)).isTrue();
+        assertThat(dirty).isEqualTo(new Rect(0, 0, 400, 300));
+
+        assertThat(touchManager.onEvent(event(MotionEvent.ACTION_MOVE, 300, 150), dirty)).isTrue();
+        assertThat(dirty).isEqualTo(new Rect(0, 0, 350, 300));
+    }
+
+    @Test
+    public void stationaryMoveDoesNotRequestRedraw() {
+        touchManager.onEvent(event(MotionEvent.ACTION_DOWN, 400, 150), dirty);
+
+        assertThat(touchManager.onEvent(event(MotionEvent.ACTION_MOVE, 400, 150), dirty)).isFalse();
+        assertThat(dirty.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void changingToLargerBitmapKeepsCrop() {
+        touchManager.scaleBy(1.5f);
+        touchManager.scrollBy(40, -25);
+        final RectF before = new RectF();
+        touchManager.snapshot(Bitmap.createBitmap(800, 600, Bitmap.Config.ARGB_8888)).getNormalizedCropRect(before);
+
+        touchManager.changeFor(3200, 2400, VIEW_WIDTH, VIEW_HEIGHT);
+        final RectF after = new RectF();
+        touchManager.snapshot(Bitmap.createBitmap(3200, 2400, Bitmap.Config.ARGB_8888)).getNormalizedCropRect(after);
+
+        assertThat(after.left).isEqualTo(before.left, offset(0.001f));
+        assertThat(after.top).isEqualTo(before.top, offset(0.001f));
+        assertThat(after.right).isEqualTo(before.right, offset(0.001f));
+        assertThat(after.bottom).isEqualTo(before.bottom, offset(0.001f));
+    }
+
+    @Test
+    public void restoresCropOnAnotherViewSize() {
+        final Bitmap bitmap = Bitmap.createBitmap(800, 600, Bitmap.Config.ARGB_8888);
+        touchManager.scaleBy(2f);
+        touchManager.scrollBy(60, 20);
+        final RectF before = new RectF();
+        touchManager.snapshot(bitmap).getNormalizedCropRect(before);
+        final float frameWidthRatio = touchManager.getFrameWidthRatio();
+        final float frameHeightRatio = touchManager.getFrameHeightRatio();
+
+        touchManager.resetFor(800, 600, VIEW_WIDTH * 2, VIEW_HEIGHT * 2);
+        touchManager.restore(frameWidthRatio, frameHeightRatio, before);
+        final RectF after = new RectF();
+        touchManager.snapshot(bitmap).getNormalizedCropRect(after);
+
+        assertThat(after.left).isEqualTo(before.left, offset(0.01f));
+        assertThat(after.top).isEqualTo(before.top, offset(0.01f));
+        assertThat(after.right).isEqualTo(before.right, offset(0.01f));
+        assertThat(after.bottom).isEqualTo(before.bottom, offset(0.01f));
+    }
+
+    @Test
+    public void gestureHotPathDoesNotAllocate() {
+        touchManager = new TouchManager(new StillImageView(), new CropViewConfig(), new FrameByFrameAnimator());
+        touchManager.resetFor(800, 600, VIEW_WIDTH, VIEW_HEIGHT);
+        final OverScroller scroller = new OverScroller(RuntimeEnvironment.application);
+
+        // Warm up so that lazily initialized runtime state is not accounted for
+        runGestures(1000);
+        runFlingScroller(scroller, 1000);
+        final long before = allocatedBytes();
+        runGestures(1000);
+        final long allocated = allocatedBytes() - before;
+        // Robolectric's shadow of OverScroller allocates on every call, only the rest of the flings is measured
+        final long beforeScroller = allocatedBytes();
+        runFlingScroller(scroller, 1000);
+        final long scrollerAllocated = allocatedBytes() - beforeScroller;
+
+        assertThat(allocated - scrollerAllocated).isZero();
+    }
+
+    void runGestures(int count) {
+        for (int i = 0; i < count; i++) {
+            // What the fling and double tap listeners run, minus reading the event, Robolectric's shadow of MotionEvent
+            // allocates on every getX() and getY()
+            touchManager.fling(200, 150, i % 2 == 0 ? 8000 : -8000, 6000);
+            touchManager.doubleTap(200, 150);
+            touchManager.scaleBy(i % 2 == 0 ? 1.1f : 1 / 1.1f);
+            touchManager.scrollBy(i % 2 == 0 ? 3 : -3, i % 3 == 0 ? 2 : -1);
+            touchManager.setMinFrameRect();
+            touchManager.setMaxFrameRect();
+            touchManager.changeFor(800, 600, VIEW_WIDTH, VIEW_HEIGHT);
+        }
+    }
+
+    /**
+     * Makes the same {@link OverScroller} calls as <code>count</code> flings of {@link #runGestures(int)}.
+     */
+    static void runFlingScroller(OverScroller scroller, int count) {
+        for (int i = 0; i < count; i++) {
+            scroller.forceFinished(true);
+            scroller.fling(200, 150, i % 2 == 0 ? 4000 : -4000, 3000, -1600, 1600, -1200, 1200);
+            scroller.getFinalX();
+            scroller.getFinalY();
+        }
+    }
+
+    static long allocatedBytes() {
+        final com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Draws nothing, Robolectric's shadow of {@link View#invalidate()} allocates on every call.
+     */
+    static class StillImageView extends ImageView {
+
+        StillImageView() {
+            super(RuntimeEnvironment.application);
+        }
+
+        @Override
+        public void invalidate() {
+        }
+    }
+
+    /**
+     * Plays a frame halfway through and the last one as soon as started, instead of scheduling frames on the
+     * {@link android.view.Choreographer}: Robolectric's shadows of the looper and clock used by
+     * {@link ValueAnimator#start()} allocate on every call.
+     */
+    static class FrameByFrameAnimator extends ValueAnimator {
+
+        final List<AnimatorUpdateListener> updateListeners = new ArrayList<>();
+        float fraction;
+
+        @Override
+        public void addUpdateListener(AnimatorUpdateListener listener) {
+            updateListeners.add(listener);
+        }
+
+        @Override
+        public float getAnimatedFraction() {
+            return fraction;
+        }
+
+        @Override
+        public void start() {
+            playFrame(0.5f);
+            playFrame(1f);
+        }
+
+        void playFrame(float fraction) {
+            this.fraction = fraction;
+            for (int i = 0; i < updateListeners.size(); i++) {
+                updateListeners.get(i).onAnimationUpdate(this);
+            }
+        }
+    }
+
+    static MotionEvent event(int action, float x, float y) {
+        final long now = SystemClock.uptimeMillis();
+        return MotionEvent.obtain(now, now, action, x, y, 0);
+    }
+}